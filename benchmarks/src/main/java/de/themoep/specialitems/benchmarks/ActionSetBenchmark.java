@@ -0,0 +1,72 @@
+package de.themoep.specialitems.benchmarks;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.actions.ActionSet;
+import de.themoep.specialitems.actions.ItemAction;
+import de.themoep.specialitems.actions.TriggerType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up the actions of a trigger type. Only the root types have actions configured
+ * so that the child types need to inherit them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionSetBenchmark {
+    @Param({"HAND", "RIGHT_CLICK_HAND", "RIGHT_CLICK_AIR", "SHIFT_RIGHT_CLICK_INV"})
+    public String trigger;
+
+    private ActionSet actionSet;
+    private TriggerType type;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (TriggerType type : TriggerType.values()) {
+            if (type.getParents().length == 0) {
+                sb.append(type).append(":MESSAGE Hello,DONT_CANCEL/");
+            }
+        }
+        actionSet = new ActionSet(sb.toString());
+        type = TriggerType.valueOf(trigger);
+    }
+
+    @Benchmark
+    public List<ItemAction> getActions() {
+        return actionSet.getActions(type);
+    }
+}
@@ -0,0 +1,93 @@
+package de.themoep.specialitems.benchmarks;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItem;
+import de.themoep.specialitems.actions.ActionSet;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identifying special items by the id in their persistent data container or their lore
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentificationBenchmark extends PluginState {
+    private ItemStack pdcItem;
+    private ItemStack legacyItem;
+    private ItemStack otherItem;
+    private String legacyLine;
+
+    @Setup
+    public void setup() {
+        pdcItem = new SpecialItem("benchmark", "Benchmark", new ItemStack(Material.STICK), new ActionSet("RIGHT_CLICK_HAND:DONT_CANCEL"), Collections.singletonList("Some lore")).getItem();
+
+        legacyItem = new ItemStack(Material.STICK);
+        ItemMeta legacyMeta = legacyItem.getItemMeta();
+        legacyLine = SpecialItem.hideString("benchmark", ChatColor.BLUE + "" + ChatColor.ITALIC + "SpecialItems");
+        legacyMeta.setLore(Arrays.asList(ChatColor.GRAY + "Some lore", legacyLine));
+        legacyItem.setItemMeta(legacyMeta);
+
+        otherItem = new ItemStack(Material.STICK);
+        ItemMeta otherMeta = otherItem.getItemMeta();
+        otherMeta.setDisplayName("Just a stick");
+        otherMeta.setLore(Collections.singletonList("Some lore"));
+        otherItem.setItemMeta(otherMeta);
+    }
+
+    @Benchmark
+    public String getIdPersistentData() {
+        return SpecialItem.getId(pdcItem);
+    }
+
+    @Benchmark
+    public String getIdLegacyLore() {
+        return SpecialItem.getId(legacyItem);
+    }
+
+    @Benchmark
+    public String getIdOtherItem() {
+        return SpecialItem.getId(otherItem);
+    }
+
+    @Benchmark
+    public String getHiddenString() {
+        return SpecialItem.getHiddenString(legacyLine);
+    }
+}
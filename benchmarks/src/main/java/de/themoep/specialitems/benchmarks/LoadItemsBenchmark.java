@@ -0,0 +1,75 @@
+package de.themoep.specialitems.benchmarks;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.ItemRegistry;
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading catalogs of different sizes into a registry
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadItemsBenchmark extends PluginState {
+    @Param({"10", "1000", "10000"})
+    public int items;
+
+    private ConfigurationSection config;
+
+    @Setup
+    public void setup() {
+        YamlConfiguration config = new YamlConfiguration();
+        Material[] materials = {Material.STICK, Material.DIAMOND_SWORD, Material.PLAYER_HEAD, Material.BOOK};
+        for (int i = 0; i < items; i++) {
+            ConfigurationSection item = config.createSection("items.item" + i);
+            item.set("displayname", "&6Item " + i);
+            item.set("lore", Arrays.asList("First line of item " + i, "&7Second line"));
+            item.set("item", new ItemStack(materials[i % materials.length]));
+            item.set("actions.RIGHT_CLICK_HAND", Arrays.asList("MESSAGE Hello %player%!", "CONSOLE_COMMAND say %player% used item" + i));
+            item.set("actions.LEFT_CLICK_BLOCK", Arrays.asList("PLAY_SOUND minecraft:block.note_block.harp PLAYERS", "DONT_CANCEL"));
+        }
+        this.config = config;
+    }
+
+    @Benchmark
+    public ItemRegistry loadItems() {
+        return plugin.getItemManager().loadItems(config, plugin.getSettings()).getRegistry();
+    }
+}
@@ -0,0 +1,45 @@
+package de.themoep.specialitems.benchmarks;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import be.seeseemelk.mockbukkit.ServerMock;
+import de.themoep.specialitems.SpecialItems;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base state of all benchmarks which starts a mocked server with the plugin loaded
+ */
+public abstract class PluginState {
+    protected ServerMock server;
+    protected SpecialItems plugin;
+
+    @Setup(Level.Trial)
+    public void setupServer() {
+        server = MockBukkit.mock();
+        plugin = MockBukkit.load(SpecialItems.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownServer() {
+        MockBukkit.unmock();
+    }
+}
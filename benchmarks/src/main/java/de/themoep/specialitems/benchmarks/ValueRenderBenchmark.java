@@ -0,0 +1,78 @@
+package de.themoep.specialitems.benchmarks;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import be.seeseemelk.mockbukkit.entity.PlayerMock;
+import de.themoep.specialitems.actions.ItemAction;
+import de.themoep.specialitems.actions.ItemActionType;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering action values with and without variables. Every invocation uses a new trigger
+ * like every click does so that nothing is cached between invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueRenderBenchmark extends PluginState {
+    private PlayerMock player;
+    private ItemStack item;
+    private ItemAction constantAction;
+    private ItemAction variableAction;
+
+    @Setup
+    public void setup() {
+        player = server.addPlayer();
+        item = new ItemStack(Material.STICK);
+        constantAction = new ItemAction(ItemActionType.MESSAGE, "Hello there, this message has no variables!");
+        variableAction = new ItemAction(ItemActionType.MESSAGE, "Hello %player%, you are at %x% %y% %z% in %world% looking at %yaw% %pitch%!");
+    }
+
+    private Trigger newTrigger() {
+        return new Trigger(null, player, item, TriggerType.RIGHT_CLICK_AIR);
+    }
+
+    @Benchmark
+    public String getValueConstant() {
+        return constantAction.getValue(newTrigger());
+    }
+
+    @Benchmark
+    public String getValueVariables() {
+        return variableAction.getValue(newTrigger());
+    }
+}
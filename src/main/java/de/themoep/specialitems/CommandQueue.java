@@ -0,0 +1,198 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+
+/**
+ * Runs the commands of command actions spread over multiple ticks instead of all at once
+ * in the event that triggered them. Every tick queued commands are run by priority until
+ * the time budget of that tick or the commands per second limit is used up.
+ */
+public class CommandQueue {
+    private final SpecialItems plugin;
+    private final PriorityQueue<QueuedCommand> queue = new PriorityQueue<>();
+
+    private boolean enabled = false;
+    private long budgetNanos = 2000000;
+    private int maxPerSecond = 0;
+    private double tokens = 0;
+    private long sequence = 0;
+    private BukkitTask task = null;
+
+    private long queuedCommands = 0;
+    private long executedCommands = 0;
+    private long droppedCommands = 0;
+    private int peakQueueSize = 0;
+
+    public CommandQueue(SpecialItems plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Apply the queue settings from the config
+     * @param enabled       Whether or not commands should be queued
+     * @param budgetNanos   How many nanoseconds to spend on running queued commands per tick
+     * @param maxPerSecond  How many queued commands to run per second at most, 0 or less for no limit
+     */
+    public void setup(boolean enabled, long budgetNanos, int maxPerSecond) {
+        this.enabled = enabled;
+        this.budgetNanos = Math.max(0, budgetNanos);
+        this.maxPerSecond = maxPerSecond;
+        tokens = Math.max(maxPerSecond, 1);
+        if (!enabled) {
+            // Run what is left so that no commands get lost when disabling the queue
+            while (!queue.isEmpty()) {
+                run(queue.poll());
+            }
+            stop();
+        }
+    }
+
+    /**
+     * Queue a command if the queue is enabled and the item allows it
+     * @param item      The special item whose action runs the command
+     * @param player    The player that needs to be online when the command runs, <tt>null</tt> if it doesn't matter
+     * @param command   The command to run
+     * @return <tt>true</tt> if it was queued; <tt>false</tt> if it needs to be run directly
+     */
+    public boolean submit(SpecialItem item, Player player, Runnable command) {
+        if (!enabled || item == null || item.isInlineCommands()) {
+            return false;
+        }
+        queue.add(new QueuedCommand(item.getCommandPriority(), sequence++, player, command));
+        queuedCommands++;
+        if (queue.size() > peakQueueSize) {
+            peakQueueSize = queue.size();
+        }
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+        }
+        return true;
+    }
+
+    private void tick() {
+        if (maxPerSecond > 0) {
+            tokens = Math.min(maxPerSecond, tokens + maxPerSecond / 20.0);
+        }
+        long start = System.nanoTime();
+        // Always run at least one command per tick so the queue can't stall
+        while (!queue.isEmpty() && (maxPerSecond <= 0 || tokens >= 1)) {
+            run(queue.poll());
+            tokens--;
+            if (System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+        }
+        if (queue.isEmpty()) {
+            stop();
+        }
+    }
+
+    private void run(QueuedCommand queued) {
+        if (queued.player != null && !queued.player.isOnline()) {
+            droppedCommands++;
+            return;
+        }
+        try {
+            queued.command.run();
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error while running a queued command!", e);
+        }
+        executedCommands++;
+    }
+
+    private void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Stop the queue and run all queued commands directly without regard to the tick budget,
+     * players already used their items for them
+     */
+    public void destroy() {
+        stop();
+        if (!queue.isEmpty()) {
+            plugin.getLogger().log(Level.INFO, "Running " + queue.size() + " queued commands before stopping");
+            while (!queue.isEmpty()) {
+                run(queue.poll());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Get the highest amount of commands that were queued at the same time
+     */
+    public int getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    public long getQueuedCommands() {
+        return queuedCommands;
+    }
+
+    public long getExecutedCommands() {
+        return executedCommands;
+    }
+
+    /**
+     * Get the amount of commands that were not run because their player went offline
+     */
+    public long getDroppedCommands() {
+        return droppedCommands;
+    }
+
+    private static class QueuedCommand implements Comparable<QueuedCommand> {
+        private final int priority;
+        private final long sequence;
+        private final Player player;
+        private final Runnable command;
+
+        private QueuedCommand(int priority, long sequence, Player player, Runnable command) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.player = player;
+            this.command = command;
+        }
+
+        @Override
+        public int compareTo(QueuedCommand o) {
+            // Higher priorities first, same priorities in the order they were queued
+            if (priority != o.priority) {
+                return Integer.compare(o.priority, priority);
+            }
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+}
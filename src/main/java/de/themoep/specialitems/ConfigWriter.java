@@ -0,0 +1,135 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Writes the config file in the background. Saves that are requested shortly after each other
+ * are combined into one write. The config is copied on the main thread, serialized off it and
+ * written to a temporary file that then replaces the config so that it is never half written.
+ */
+public class ConfigWriter {
+    private static final long DELAY_TICKS = 20;
+
+    private final SpecialItems plugin;
+    private final File file;
+    private final Object writeLock = new Object();
+    private BukkitTask pending = null;
+    private volatile long version = 0;
+    private long writtenVersion = 0;
+    private YamlConfiguration queued = null;
+
+    public ConfigWriter(SpecialItems plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "config.yml");
+    }
+
+    /**
+     * Request the config to be saved. Needs to be called on the main thread.
+     */
+    public void save() {
+        if (pending == null) {
+            pending = plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+                pending = null;
+                long snapshotVersion = ++version;
+                YamlConfiguration snapshot = snapshot(plugin.getConfig());
+                synchronized (writeLock) {
+                    queued = snapshot;
+                }
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> write(snapshot, snapshotVersion));
+            }, DELAY_TICKS);
+        }
+    }
+
+    /**
+     * Write a pending save directly and wait for running writes to finish.
+     * Needs to be called on the main thread, e.g. when disabling or before reading the file again.
+     */
+    public void flush() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+            write(snapshot(plugin.getConfig()), ++version);
+        } else {
+            synchronized (writeLock) {
+                // Write a snapshot whose async task didn't run yet, e.g. because the plugin gets disabled
+                if (queued != null && version > writtenVersion) {
+                    write(queued, version);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy all values and comments of a config so that it can be serialized on another thread
+     */
+    private static YamlConfiguration snapshot(FileConfiguration config) {
+        YamlConfiguration snapshot = new YamlConfiguration();
+        snapshot.options().setHeader(config.options().getHeader());
+        snapshot.options().setFooter(config.options().getFooter());
+        for (Map.Entry<String, Object> entry : config.getValues(true).entrySet()) {
+            String path = entry.getKey();
+            if (entry.getValue() instanceof ConfigurationSection) {
+                snapshot.createSection(path);
+            } else if (entry.getValue() instanceof List) {
+                snapshot.set(path, new ArrayList<>((List<?>) entry.getValue()));
+            } else {
+                snapshot.set(path, entry.getValue());
+            }
+            snapshot.setComments(path, config.getComments(path));
+            snapshot.setInlineComments(path, config.getInlineComments(path));
+        }
+        return snapshot;
+    }
+
+    private void write(YamlConfiguration snapshot, long snapshotVersion) {
+        String yaml = snapshot.saveToString();
+        synchronized (writeLock) {
+            if (snapshotVersion <= writtenVersion) {
+                // A newer snapshot was already written
+                return;
+            }
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try {
+                Files.write(temp.toPath(), yaml.getBytes(StandardCharsets.UTF_8));
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                writtenVersion = snapshotVersion;
+                if (snapshotVersion == version) {
+                    queued = null;
+                }
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not save the config to " + file.getName() + "!", e);
+            }
+        }
+    }
+}
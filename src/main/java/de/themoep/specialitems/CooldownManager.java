@@ -0,0 +1,239 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.actions.TriggerType;
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of the cooldowns and rate limits of items per player. Every online player gets a slot
+ * whose arrays are indexed by the cooldown keys and item handles of the active {@link CooldownTable}.
+ * Times are counted in server ticks by one shared task which also renders the action bar countdowns.
+ * Slots of players that left are kept until all of their cooldowns expired so that relogging doesn't reset them.
+ */
+public class CooldownManager implements Listener {
+    private static final int ACTION_BAR_INTERVAL = 10;
+
+    private final SpecialItems plugin;
+    private final Map<UUID, PlayerCooldowns> players = new HashMap<>();
+    private final BitSet usedSlots = new BitSet();
+    private PlayerCooldowns[] slots = new PlayerCooldowns[16];
+    private long currentTick = 0;
+
+    public CooldownManager(SpecialItems plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            addPlayer(player);
+        }
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+    }
+
+    /**
+     * Try to use an item. If it isn't on cooldown and not rate limited then the use is recorded.
+     * @param player    The player that uses the item
+     * @param item      The special item
+     * @param type      The type of the trigger
+     * @return <tt>true</tt> if the item can be used; <tt>false</tt> if it is on cooldown or rate limited
+     */
+    public boolean use(Player player, SpecialItem item, TriggerType type) {
+        CooldownTable table = plugin.getItemManager().getRegistry().getCooldowns();
+        int handle = item.getHandle();
+        if (!table.isLimited(handle)) {
+            return true;
+        }
+        PlayerCooldowns cooldowns = getCooldowns(player, table);
+
+        int key = table.getKey(handle, type);
+        if (key >= 0 && cooldowns.nextAllowed[key] > currentTick) {
+            showRemaining(player, cooldowns.nextAllowed[key] - currentTick);
+            return false;
+        }
+
+        int rateUses = table.getRateUses(handle);
+        if (rateUses > 0) {
+            if (cooldowns.windowEnd[handle] <= currentTick) {
+                cooldowns.windowEnd[handle] = currentTick + table.getRateTicks(handle);
+                cooldowns.uses[handle] = 0;
+            }
+            if (cooldowns.uses[handle] >= rateUses) {
+                showRemaining(player, cooldowns.windowEnd[handle] - currentTick);
+                return false;
+            }
+            cooldowns.uses[handle]++;
+            cooldowns.expires = Math.max(cooldowns.expires, cooldowns.windowEnd[handle]);
+        }
+
+        if (key >= 0) {
+            cooldowns.nextAllowed[key] = currentTick + table.getTicks(handle, type);
+            cooldowns.expires = Math.max(cooldowns.expires, cooldowns.nextAllowed[key]);
+            if (table.isActionBar(handle)) {
+                cooldowns.displayUntil = cooldowns.nextAllowed[key];
+            }
+        }
+        return true;
+    }
+
+    private PlayerCooldowns getCooldowns(Player player, CooldownTable table) {
+        PlayerCooldowns cooldowns = players.get(player.getUniqueId());
+        if (cooldowns == null) {
+            cooldowns = addPlayer(player);
+        }
+        if (cooldowns.table != table) {
+            // Keys changed due to a reload, keep running cooldowns of items that still exist
+            cooldowns.remap(table);
+        }
+        return cooldowns;
+    }
+
+    private PlayerCooldowns addPlayer(Player player) {
+        int slot = usedSlots.nextClearBit(0);
+        if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        PlayerCooldowns cooldowns = new PlayerCooldowns(player, slot);
+        cooldowns.reset(plugin.getItemManager().getRegistry().getCooldowns());
+        usedSlots.set(slot);
+        slots[slot] = cooldowns;
+        players.put(player.getUniqueId(), cooldowns);
+        return cooldowns;
+    }
+
+    private void showRemaining(Player player, long ticks) {
+        String seconds = String.valueOf((ticks + 19) / 20);
+        player.spigot().sendMessage(ChatMessageType.ACTION_BAR, TextComponent.fromLegacyText(plugin.getLang("cooldown", "seconds", seconds)));
+    }
+
+    private void tick() {
+        currentTick++;
+        if (currentTick % ACTION_BAR_INTERVAL != 0) {
+            return;
+        }
+        for (int slot = usedSlots.nextSetBit(0); slot >= 0; slot = usedSlots.nextSetBit(slot + 1)) {
+            PlayerCooldowns cooldowns = slots[slot];
+            if (cooldowns.player == null) {
+                if (cooldowns.expires <= currentTick) {
+                    // Offline and nothing left to remember
+                    removeSlot(cooldowns);
+                }
+            } else if (cooldowns.displayUntil > currentTick) {
+                showRemaining(cooldowns.player, cooldowns.displayUntil - currentTick);
+            } else if (cooldowns.displayUntil > 0) {
+                cooldowns.displayUntil = 0;
+                cooldowns.player.spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(""));
+            }
+        }
+    }
+
+    private void removeSlot(PlayerCooldowns cooldowns) {
+        players.remove(cooldowns.playerId);
+        slots[cooldowns.slot] = null;
+        usedSlots.clear(cooldowns.slot);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        PlayerCooldowns cooldowns = players.get(event.getPlayer().getUniqueId());
+        if (cooldowns != null) {
+            cooldowns.player = event.getPlayer();
+        } else {
+            addPlayer(event.getPlayer());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        PlayerCooldowns cooldowns = players.get(event.getPlayer().getUniqueId());
+        if (cooldowns != null) {
+            if (cooldowns.expires > currentTick) {
+                // Keep the slot until the cooldowns expired, the tick task removes it then
+                cooldowns.player = null;
+                cooldowns.displayUntil = 0;
+            } else {
+                removeSlot(cooldowns);
+            }
+        }
+    }
+
+    private static class PlayerCooldowns {
+        private final UUID playerId;
+        private final int slot;
+        private Player player;
+        private CooldownTable table;
+        private long[] nextAllowed;
+        private long[] windowEnd;
+        private int[] uses;
+        private long displayUntil = 0;
+        private long expires = 0;
+
+        private PlayerCooldowns(Player player, int slot) {
+            this.playerId = player.getUniqueId();
+            this.player = player;
+            this.slot = slot;
+        }
+
+        private void reset(CooldownTable table) {
+            this.table = table;
+            nextAllowed = new long[table.getKeyCount()];
+            windowEnd = new long[table.getHandleCount()];
+            uses = new int[table.getHandleCount()];
+            displayUntil = 0;
+            expires = 0;
+        }
+
+        /**
+         * Move the running cooldowns and rate limits to the keys and handles of another table
+         */
+        private void remap(CooldownTable newTable) {
+            long[] newNextAllowed = new long[newTable.getKeyCount()];
+            for (Map.Entry<String, Integer> entry : table.getKeyNames().entrySet()) {
+                Integer newKey = newTable.getKeyNames().get(entry.getKey());
+                if (newKey != null) {
+                    newNextAllowed[newKey] = nextAllowed[entry.getValue()];
+                }
+            }
+            long[] newWindowEnd = new long[newTable.getHandleCount()];
+            int[] newUses = new int[newTable.getHandleCount()];
+            for (Map.Entry<String, Integer> entry : table.getHandles().entrySet()) {
+                int newHandle = newTable.getHandle(entry.getKey());
+                if (newHandle >= 0) {
+                    newWindowEnd[newHandle] = windowEnd[entry.getValue()];
+                    newUses[newHandle] = uses[entry.getValue()];
+                }
+            }
+            table = newTable;
+            nextAllowed = newNextAllowed;
+            windowEnd = newWindowEnd;
+            uses = newUses;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cooldowns and rate limits of all items of a registry. Every cooldown gets an integer key
+ * so that the remaining time per player can be stored in a plain array indexed by that key.
+ * Items in the same cooldown group share their key. Keys and handles also have names that stay the same
+ * between reloads so that running cooldowns can be moved to the table of a new registry.
+ */
+public class CooldownTable {
+    private static final TriggerType[] TRIGGER_TYPES = TriggerType.values();
+    private static final CooldownTable EMPTY = new CooldownTable(Collections.<String>emptyList(), Collections.<Config>emptyList());
+
+    private final int keyCount;
+    private final int[][] keys;
+    private final int[][] ticks;
+    private final int[] rateUses;
+    private final int[] rateTicks;
+    private final boolean[] actionBar;
+    private final Map<String, Integer> handles = new HashMap<>();
+    private final Map<String, Integer> keyNames = new HashMap<>();
+
+    /**
+     * @param itemIds The id of every item indexed by the item's handle
+     * @param configs The cooldown config of every item indexed by the item's handle, <tt>null</tt> if it has none
+     */
+    CooldownTable(List<String> itemIds, List<Config> configs) {
+        int handleCount = configs.size();
+        keys = new int[handleCount][];
+        ticks = new int[handleCount][];
+        rateUses = new int[handleCount];
+        rateTicks = new int[handleCount];
+        actionBar = new boolean[handleCount];
+        Map<String, Integer> groups = new HashMap<>();
+        int keyCount = 0;
+        for (int handle = 0; handle < handleCount; handle++) {
+            Config config = configs.get(handle);
+            if (config == null) {
+                continue;
+            }
+            String itemId = itemIds.get(handle);
+            handles.put(itemId, handle);
+            rateUses[handle] = config.rateUses;
+            rateTicks[handle] = config.rateTicks;
+            actionBar[handle] = config.actionBar;
+            if (config.ticks <= 0 && config.triggerTicks.isEmpty()) {
+                continue;
+            }
+
+            int sharedKey;
+            if (config.group != null) {
+                Integer groupKey = groups.get(config.group);
+                if (groupKey == null) {
+                    groupKey = keyCount++;
+                    groups.put(config.group, groupKey);
+                    keyNames.put("group:" + config.group, groupKey);
+                }
+                sharedKey = groupKey;
+            } else {
+                sharedKey = keyCount++;
+                keyNames.put("item:" + itemId, sharedKey);
+            }
+            Map<TriggerType, Integer> triggerKeys = new EnumMap<>(TriggerType.class);
+            for (TriggerType type : config.triggerTicks.keySet()) {
+                triggerKeys.put(type, keyCount);
+                keyNames.put("item:" + itemId + ":" + type, keyCount++);
+            }
+
+            keys[handle] = new int[TRIGGER_TYPES.length];
+            ticks[handle] = new int[TRIGGER_TYPES.length];
+            for (TriggerType type : TRIGGER_TYPES) {
+                TriggerType configured = config.getConfiguredType(type);
+                if (configured != null) {
+                    keys[handle][type.ordinal()] = triggerKeys.get(configured);
+                    ticks[handle][type.ordinal()] = config.triggerTicks.get(configured);
+                } else {
+                    keys[handle][type.ordinal()] = sharedKey;
+                    ticks[handle][type.ordinal()] = config.ticks;
+                }
+            }
+        }
+        this.keyCount = keyCount;
+    }
+
+    /**
+     * Get a table without any cooldowns
+     */
+    public static CooldownTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Get the handle of a limited item by its id
+     * @return The handle or -1 if the item doesn't exist or has no cooldown or rate limit in this table
+     */
+    public int getHandle(String itemId) {
+        Integer handle = handles.get(itemId);
+        return handle != null ? handle : -1;
+    }
+
+    /**
+     * Get the names of all cooldown keys which stay the same between reloads
+     * @return The names mapped to their keys
+     */
+    public Map<String, Integer> getKeyNames() {
+        return Collections.unmodifiableMap(keyNames);
+    }
+
+    /**
+     * Get the ids of all limited items
+     * @return The ids mapped to their handles
+     */
+    public Map<String, Integer> getHandles() {
+        return Collections.unmodifiableMap(handles);
+    }
+
+    /**
+     * Get the amount of cooldown keys. Arrays indexed by key need to have this size.
+     */
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Get the amount of item handles in this table. Arrays indexed by handle need to have this size.
+     */
+    public int getHandleCount() {
+        return rateUses.length;
+    }
+
+    /**
+     * Check whether or not an item has a cooldown or a rate limit
+     * @param handle The handle of the item
+     */
+    public boolean isLimited(int handle) {
+        return handle >= 0 && handle < rateUses.length && (keys[handle] != null || rateUses[handle] > 0);
+    }
+
+    /**
+     * Get the cooldown key of an item and trigger
+     * @return The key or -1 if there is no cooldown
+     */
+    public int getKey(int handle, TriggerType type) {
+        return keys[handle] != null && ticks[handle][type.ordinal()] > 0 ? keys[handle][type.ordinal()] : -1;
+    }
+
+    /**
+     * Get the cooldown in ticks of an item and trigger
+     */
+    public int getTicks(int handle, TriggerType type) {
+        return ticks[handle] != null ? ticks[handle][type.ordinal()] : 0;
+    }
+
+    /**
+     * Get how often an item can be used in its rate limit window
+     * @return The amount of uses or 0 if the item has no rate limit
+     */
+    public int getRateUses(int handle) {
+        return rateUses[handle];
+    }
+
+    /**
+     * Get the length of an item's rate limit window in ticks
+     */
+    public int getRateTicks(int handle) {
+        return rateTicks[handle];
+    }
+
+    /**
+     * Whether or not the remaining cooldown of an item should be shown in the action bar
+     */
+    public boolean isActionBar(int handle) {
+        return actionBar[handle];
+    }
+
+    /**
+     * The cooldown settings of a single item like they are configured
+     */
+    static class Config {
+        private final int ticks;
+        private final String group;
+        private final boolean actionBar;
+        private final Map<TriggerType, Integer> triggerTicks = new EnumMap<>(TriggerType.class);
+        private final int rateUses;
+        private final int rateTicks;
+
+        private Config(ConfigurationSection cooldown, ConfigurationSection rateLimit) throws IllegalArgumentException {
+            if (cooldown != null) {
+                ticks = cooldown.getInt("ticks", 0);
+                group = cooldown.getString("group");
+                actionBar = cooldown.getBoolean("actionbar", false);
+                ConfigurationSection triggers = cooldown.getConfigurationSection("triggers");
+                if (triggers != null) {
+                    for (String key : triggers.getKeys(false)) {
+                        triggerTicks.put(TriggerType.valueOf(key.toUpperCase()), triggers.getInt(key));
+                    }
+                }
+            } else {
+                ticks = 0;
+                group = null;
+                actionBar = false;
+            }
+            if (rateLimit != null) {
+                rateUses = rateLimit.getInt("uses", 0);
+                rateTicks = rateLimit.getInt("ticks", 20);
+                if (rateUses > 0 && rateTicks <= 0) {
+                    throw new IllegalArgumentException("The ticks of a rate limit need to be greater than 0!");
+                }
+            } else {
+                rateUses = 0;
+                rateTicks = 0;
+            }
+        }
+
+        /**
+         * Parse the cooldown settings of an item
+         * @param itemSection The config section of the item
+         * @return The settings or <tt>null</tt> if the item has no cooldown or rate limit
+         * @throws IllegalArgumentException If the config is invalid
+         */
+        static Config parse(ConfigurationSection itemSection) throws IllegalArgumentException {
+            ConfigurationSection cooldown = itemSection.getConfigurationSection("cooldown");
+            ConfigurationSection rateLimit = itemSection.getConfigurationSection("rate-limit");
+            if (cooldown == null && rateLimit == null) {
+                return null;
+            }
+            return new Config(cooldown, rateLimit);
+        }
+
+        /**
+         * Get the trigger type that has its own cooldown configured which applies to a type
+         * @return The type itself, the nearest configured parent or <tt>null</tt> if the shared cooldown applies
+         */
+        private TriggerType getConfiguredType(TriggerType type) {
+            if (triggerTicks.containsKey(type)) {
+                return type;
+            }
+            for (TriggerType parent : type.getParents()) {
+                TriggerType configured = getConfiguredType(parent);
+                if (configured != null) {
+                    return configured;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.actions.ItemActionType;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Counts how often items get used and how long their actions take per item, trigger type and action type.
+ * Recording is skipped completely when the metrics are disabled.
+ */
+public class ExecutionMetrics {
+    private static final TriggerType[] TRIGGER_TYPES = TriggerType.values();
+    private static final ItemActionType[] ACTION_TYPES = ItemActionType.values();
+
+    private final SpecialItems plugin;
+    private volatile boolean enabled = false;
+    private BukkitTask dumpTask = null;
+
+    private final LongAdder fastRejected = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Histogram[] triggers = new Histogram[TRIGGER_TYPES.length];
+    private final Histogram[] actions = new Histogram[ACTION_TYPES.length];
+    private final Map<String, ItemMetrics> itemsById = new HashMap<>();
+    private volatile ItemMetrics[] items = new ItemMetrics[0];
+
+    public ExecutionMetrics(SpecialItems plugin) {
+        this.plugin = plugin;
+        for (int i = 0; i < triggers.length; i++) {
+            triggers[i] = new Histogram();
+        }
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Apply the metric settings from the config
+     * @param enabled       Whether or not to record metrics
+     * @param dumpInterval  The interval in seconds in which the metrics get written to a file, 0 or less to disable
+     * @param dumpFile      The file to write the metrics to, relative to the plugin's folder
+     */
+    public void setup(boolean enabled, int dumpInterval, String dumpFile) {
+        setEnabled(enabled);
+        if (dumpTask != null) {
+            dumpTask.cancel();
+            dumpTask = null;
+        }
+        if (dumpInterval > 0 && dumpFile != null && !dumpFile.isEmpty()) {
+            File file = new File(plugin.getDataFolder(), dumpFile);
+            long ticks = dumpInterval * 20L;
+            dumpTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+                if (this.enabled) {
+                    dump(file);
+                }
+            }, ticks, ticks);
+        }
+    }
+
+    /**
+     * Update the per item metrics to the handles of a new registry. Items keep their metrics by id.
+     * @param registry The new registry
+     */
+    void update(ItemRegistry registry) {
+        ItemMetrics[] items = new ItemMetrics[registry.size()];
+        synchronized (itemsById) {
+            for (int handle = 0; handle < items.length; handle++) {
+                SpecialItem item = registry.getSpecialItem(handle);
+                items[handle] = itemsById.computeIfAbsent(item.getId(), ItemMetrics::new);
+            }
+        }
+        this.items = items;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Reset all recorded values
+     */
+    public void reset() {
+        fastRejected.reset();
+        rejected.reset();
+        for (Histogram histogram : triggers) {
+            histogram.reset();
+        }
+        for (Histogram histogram : actions) {
+            histogram.reset();
+        }
+        synchronized (itemsById) {
+            for (ItemMetrics item : itemsById.values()) {
+                item.reset();
+            }
+        }
+    }
+
+    /**
+     * Record that an ItemStack was rejected by its material without reading its meta
+     */
+    public void recordFastReject() {
+        fastRejected.increment();
+    }
+
+    /**
+     * Record that an ItemStack was checked but turned out to not be a special item
+     */
+    public void recordReject() {
+        rejected.increment();
+    }
+
+    /**
+     * Record that a player didn't have the permission to use an item
+     */
+    public void recordPermissionDenied(SpecialItem item) {
+        ItemMetrics metrics = getItem(item);
+        if (metrics != null) {
+            metrics.permissionDenied.increment();
+        }
+    }
+
+    /**
+     * Record that an item couldn't be used due to its cooldown or rate limit
+     */
+    public void recordCooldown(SpecialItem item) {
+        ItemMetrics metrics = getItem(item);
+        if (metrics != null) {
+            metrics.cooldown.increment();
+        }
+    }
+
+    /**
+     * Record the execution of all actions of an item for a trigger
+     * @param item  The special item
+     * @param type  The type of the trigger
+     * @param nanos How long it took in nanoseconds
+     */
+    public void recordExecution(SpecialItem item, TriggerType type, long nanos) {
+        triggers[type.ordinal()].record(nanos);
+        ItemMetrics metrics = getItem(item);
+        if (metrics != null) {
+            metrics.executions.record(nanos);
+        }
+    }
+
+    /**
+     * Record the execution of a single action
+     * @param type  The type of the action
+     * @param nanos How long it took in nanoseconds
+     */
+    public void recordAction(ItemActionType type, long nanos) {
+        actions[type.ordinal()].record(nanos);
+    }
+
+    private ItemMetrics getItem(SpecialItem item) {
+        ItemMetrics[] items = this.items;
+        return item.getHandle() >= 0 && item.getHandle() < items.length ? items[item.getHandle()] : null;
+    }
+
+    /**
+     * Get a report of the recorded metrics
+     * @return The lines of the report
+     */
+    public List<String> getReport() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Enabled: " + enabled);
+        lines.add("Fast rejected: " + fastRejected.sum() + " Rejected: " + rejected.sum());
+        lines.add("Triggers:");
+        for (TriggerType type : TRIGGER_TYPES) {
+            if (triggers[type.ordinal()].getCount() > 0) {
+                lines.add(" " + type + ": " + triggers[type.ordinal()]);
+            }
+        }
+        lines.add("Actions:");
+        for (ItemActionType type : ACTION_TYPES) {
+            if (actions[type.ordinal()].getCount() > 0) {
+                lines.add(" " + type + ": " + actions[type.ordinal()]);
+            }
+        }
+        List<ItemMetrics> items;
+        synchronized (itemsById) {
+            items = new ArrayList<>(itemsById.values());
+        }
+        items.removeIf(item -> item.executions.getCount() == 0 && item.permissionDenied.sum() == 0 && item.cooldown.sum() == 0);
+        items.sort(Comparator.comparingLong((ItemMetrics item) -> item.executions.getTotal()).reversed());
+        lines.add("Items by total time:");
+        for (ItemMetrics item : items) {
+            lines.add(" " + item);
+        }
+        return lines;
+    }
+
+    /**
+     * Get a report of the recorded metrics of a single item
+     * @param id The id of the item
+     * @return The lines of the report or <tt>null</tt> if nothing was recorded for that item
+     */
+    public List<String> getReport(String id) {
+        ItemMetrics item;
+        synchronized (itemsById) {
+            item = itemsById.get(id.toLowerCase());
+        }
+        if (item == null) {
+            return null;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add("Executions: " + item.executions);
+        lines.add("Permission denied: " + item.permissionDenied.sum());
+        lines.add("Cooldown or rate limited: " + item.cooldown.sum());
+        return lines;
+    }
+
+    /**
+     * Write the report to a file. The file is replaced atomically.
+     * @param file The file to write to
+     */
+    private void dump(File file) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        lines.addAll(getReport());
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write metrics to " + file.getName() + "!", e);
+        }
+    }
+
+    private static class ItemMetrics {
+        private final String id;
+        private final Histogram executions = new Histogram();
+        private final LongAdder permissionDenied = new LongAdder();
+        private final LongAdder cooldown = new LongAdder();
+
+        private ItemMetrics(String id) {
+            this.id = id;
+        }
+
+        private void reset() {
+            executions.reset();
+            permissionDenied.reset();
+            cooldown.reset();
+        }
+
+        @Override
+        public String toString() {
+            return id + ": " + executions + " denied=" + permissionDenied.sum() + " cooldown=" + cooldown.sum();
+        }
+    }
+
+    /**
+     * A latency histogram with fixed buckets. Every power of two is split into four buckets
+     * so that percentiles are accurate to about 25%.
+     */
+    static class Histogram {
+        private static final int BUCKETS = 256;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(getBucket(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private static int getBucket(long value) {
+            if (value < 4) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - 2)) & 3;
+            return exponent * 4 + sub;
+        }
+
+        private static long getUpperBound(int bucket) {
+            if (bucket < 4) {
+                return bucket;
+            }
+            int exponent = bucket / 4;
+            long lower = (4L + (bucket & 3)) << (exponent - 2);
+            return lower + (1L << (exponent - 2)) - 1;
+        }
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getTotal() {
+            return total.sum();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Get the value below which a certain percentage of the recorded values are
+         * @param percentile The percentile between 0 and 1
+         * @return The upper bound of the bucket that contains the percentile
+         */
+        long getPercentile(double percentile) {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target && seen > 0) {
+                    return Math.min(getUpperBound(i), getMax());
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            total.reset();
+            max.reset();
+        }
+
+        private static String format(long nanos) {
+            return String.format("%.3fms", nanos / 1000000.0);
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount()
+                    + " p50=" + format(getPercentile(0.5))
+                    + " p99=" + format(getPercentile(0.99))
+                    + " max=" + format(getMax())
+                    + " total=" + format(getTotal());
+        }
+    }
+}
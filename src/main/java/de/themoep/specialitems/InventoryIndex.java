@@ -0,0 +1,469 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityPickupItemEvent;
+import org.bukkit.event.entity.EntityShootBowEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerDropItemEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.event.player.PlayerItemHeldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Keeps track of which slots of a player's inventory contain which special item so that
+ * looking for an item in a player's inventory only needs to read the meta of the slots that contain it.
+ * The index gets built on join and slots get marked dirty by inventory events. Dirty slots are
+ * re-indexed on the next tick or when the index is queried before that. Every once in a while
+ * the index of a player gets fully verified in case another plugin changed the inventory directly.
+ * Slots found by the index are always checked before they are used; if one is wrong or the item
+ * isn't found at all the whole index of that player gets verified and the query is answered from
+ * the fixed index, as items can be added without any event, e.g. by other plugins or commands.
+ */
+public class InventoryIndex implements Listener {
+    private static final int VERIFY_INTERVAL = 20;
+
+    private final SpecialItems plugin;
+    private final Map<UUID, PlayerIndex> indices = new HashMap<>();
+    private final List<PlayerIndex> dirty = new ArrayList<>();
+    private BukkitTask flushTask = null;
+    private Iterator<PlayerIndex> verifyIterator = null;
+    private long mismatches = 0;
+
+    public InventoryIndex(SpecialItems plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            indices.put(player.getUniqueId(), new PlayerIndex(player));
+        }
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this::verifyNext, VERIFY_INTERVAL, VERIFY_INTERVAL);
+    }
+
+    /**
+     * Check whether or not a player's inventory contains a special item
+     * @param player The player
+     * @param item   The special item
+     * @return <tt>true</tt> if it contains at least one
+     */
+    public boolean contains(Player player, SpecialItem item) {
+        return findFirstSlot(getIndex(player), item) >= 0;
+    }
+
+    /**
+     * Count how many of a special item a player has in their inventory
+     * @param player The player
+     * @param item   The special item
+     * @return The amount of items
+     */
+    public int count(Player player, SpecialItem item) {
+        PlayerIndex index = getIndex(player);
+        // Any slot could have gotten the item without us noticing
+        verify(index);
+        int amount = 0;
+        for (int slot = findSlot(index, item, 0); slot >= 0; slot = findSlot(index, item, slot + 1)) {
+            amount += player.getInventory().getItem(slot).getAmount();
+        }
+        return amount;
+    }
+
+    /**
+     * Remove a special item from the first slot of a player's inventory that contains it
+     * @param player The player
+     * @param item   The special item
+     * @param amount The amount to remove from that slot
+     * @return <tt>true</tt> if some where removed; <tt>false</tt> if none was found
+     */
+    public boolean remove(Player player, SpecialItem item, int amount) {
+        PlayerIndex index = getIndex(player);
+        int slot = findFirstSlot(index, item);
+        if (slot < 0) {
+            return false;
+        }
+        ItemStack stack = player.getInventory().getItem(slot);
+        if (stack.getAmount() > amount) {
+            stack.setAmount(stack.getAmount() - amount);
+        } else {
+            stack = null;
+            index.set(slot, -1);
+        }
+        player.getInventory().setItem(slot, stack);
+        return true;
+    }
+
+    /**
+     * Find the first slot that contains a special item. If the index doesn't know any then
+     * it gets verified in case the item was added without an event.
+     * @param index The index to search in
+     * @param item  The special item
+     * @return The slot or -1 if there is none
+     */
+    private int findFirstSlot(PlayerIndex index, SpecialItem item) {
+        int slot = findSlot(index, item, 0);
+        if (slot < 0) {
+            verify(index);
+            slot = findSlot(index, item, 0);
+        }
+        return slot;
+    }
+
+    /**
+     * Find the next slot that contains a special item and check that it really does.
+     * If the index was wrong then the whole index gets verified before searching again.
+     * @param index The index to search in
+     * @param item  The special item
+     * @param from  The slot to start at
+     * @return The slot or -1 if there is none
+     */
+    private int findSlot(PlayerIndex index, SpecialItem item, int from) {
+        for (int slot = index.occupied.nextSetBit(from); slot >= 0; slot = index.occupied.nextSetBit(slot + 1)) {
+            if (index.handles[slot] == item.getHandle()) {
+                if (index.getHandle(index.player.getInventory().getItem(slot)) == item.getHandle()) {
+                    return slot;
+                }
+                // Something changed the inventory without us noticing
+                verify(index);
+                return findSlot(index, item, from);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mark all slots of a player as dirty. Should be called by other plugins after changing a player's inventory directly.
+     * @param player The player
+     */
+    public void invalidate(Player player) {
+        PlayerIndex index = indices.get(player.getUniqueId());
+        if (index != null) {
+            index.markAllDirty();
+        }
+    }
+
+    /**
+     * Get the amount of slots that were wrong when verifying the indices
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    private PlayerIndex getIndex(Player player) {
+        PlayerIndex index = indices.get(player.getUniqueId());
+        if (index == null) {
+            index = new PlayerIndex(player);
+            indices.put(player.getUniqueId(), index);
+        } else {
+            index.flush();
+        }
+        return index;
+    }
+
+    /**
+     * Mark a slot of a player as dirty. Should be called after changing a slot of a player's inventory directly.
+     * @param entity The player
+     * @param slot   The slot in the player's inventory
+     */
+    public void markDirty(HumanEntity entity, int slot) {
+        PlayerIndex index = indices.get(entity.getUniqueId());
+        if (index != null) {
+            index.markDirty(slot);
+        }
+    }
+
+    /**
+     * Mark the slot of a player's inventory that belongs to an equipment slot as dirty
+     * @param entity The player
+     * @param slot   The equipment slot
+     */
+    public void markDirty(HumanEntity entity, EquipmentSlot slot) {
+        switch (slot) {
+            case HAND:
+                markDirty(entity, entity.getInventory().getHeldItemSlot());
+                break;
+            case OFF_HAND:
+                markDirty(entity, PlayerIndex.OFF_HAND_SLOT);
+                break;
+            case FEET:
+                markDirty(entity, PlayerIndex.FEET_SLOT);
+                break;
+            case LEGS:
+                markDirty(entity, PlayerIndex.FEET_SLOT + 1);
+                break;
+            case CHEST:
+                markDirty(entity, PlayerIndex.FEET_SLOT + 2);
+                break;
+            case HEAD:
+                markDirty(entity, PlayerIndex.FEET_SLOT + 3);
+                break;
+        }
+    }
+
+    private void markAllDirty(HumanEntity entity) {
+        PlayerIndex index = indices.get(entity.getUniqueId());
+        if (index != null) {
+            index.markAllDirty();
+        }
+    }
+
+    private void scheduleFlush(PlayerIndex index) {
+        dirty.add(index);
+        if (flushTask == null) {
+            flushTask = plugin.getServer().getScheduler().runTask(plugin, () -> {
+                flushTask = null;
+                for (PlayerIndex dirtyIndex : dirty) {
+                    dirtyIndex.flush();
+                }
+                dirty.clear();
+            });
+        }
+    }
+
+    private void verifyNext() {
+        if (verifyIterator == null || !verifyIterator.hasNext()) {
+            verifyIterator = new ArrayList<>(indices.values()).iterator();
+        }
+        if (verifyIterator.hasNext()) {
+            PlayerIndex index = verifyIterator.next();
+            if (index.player.isOnline()) {
+                index.flush();
+                verify(index);
+            }
+        }
+    }
+
+    private void verify(PlayerIndex index) {
+        int wrong = index.verify();
+        if (wrong > 0) {
+            mismatches += wrong;
+            plugin.getLogger().log(Level.FINE, "Fixed " + wrong + " wrong slots in the item index of " + index.player.getName());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        indices.put(event.getPlayer().getUniqueId(), new PlayerIndex(event.getPlayer()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        PlayerIndex index = indices.remove(event.getPlayer().getUniqueId());
+        if (index != null) {
+            dirty.remove(index);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent event) {
+        if (event.getClick() == ClickType.NUMBER_KEY) {
+            markDirty(event.getWhoClicked(), event.getHotbarButton());
+        }
+        if (event.isShiftClick() || event.getClick() == ClickType.DOUBLE_CLICK) {
+            // Items can end up in or come from any slot
+            markAllDirty(event.getWhoClicked());
+        } else if (event.getClickedInventory() instanceof PlayerInventory) {
+            markDirty(event.getWhoClicked(), event.getSlot());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        for (int rawSlot : event.getRawSlots()) {
+            if (event.getView().getInventory(rawSlot) instanceof PlayerInventory) {
+                markDirty(event.getWhoClicked(), event.getView().convertSlot(rawSlot));
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPickup(EntityPickupItemEvent event) {
+        if (event.getEntity() instanceof Player && plugin.getItemManager().couldBeSpecialItem(event.getItem().getItemStack())) {
+            // We don't know which slot the item is put into
+            markAllDirty((Player) event.getEntity());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDrop(PlayerDropItemEvent event) {
+        markDirty(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onHeldChange(PlayerItemHeldEvent event) {
+        // The new slot might have been changed by something that didn't call an event
+        markDirty(event.getPlayer(), event.getNewSlot());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSwapHands(PlayerSwapHandItemsEvent event) {
+        markDirty(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+        markDirty(event.getPlayer(), PlayerIndex.OFF_HAND_SLOT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onConsume(PlayerItemConsumeEvent event) {
+        markDirty(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+        markDirty(event.getPlayer(), PlayerIndex.OFF_HAND_SLOT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlace(BlockPlaceEvent event) {
+        markDirty(event.getPlayer(), event.getPlayer().getInventory().getHeldItemSlot());
+        markDirty(event.getPlayer(), PlayerIndex.OFF_HAND_SLOT);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onShootBow(EntityShootBowEvent event) {
+        if (event.getEntity() instanceof Player && event.shouldConsumeItem()
+                && plugin.getItemManager().couldBeSpecialItem(event.getConsumable())) {
+            // The arrow can be taken from any slot
+            markAllDirty((Player) event.getEntity());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onItemBreak(PlayerItemBreakEvent event) {
+        markAllDirty(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onDeath(PlayerDeathEvent event) {
+        markAllDirty(event.getEntity());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        markAllDirty(event.getPlayer());
+    }
+
+    private class PlayerIndex {
+        private static final int FEET_SLOT = 36;
+        private static final int OFF_HAND_SLOT = 40;
+
+        private final Player player;
+        private final int[] handles;
+        private final BitSet occupied = new BitSet();
+        private final BitSet dirtySlots = new BitSet();
+        private ItemRegistry registry;
+        private boolean scheduled = false;
+
+        private PlayerIndex(Player player) {
+            this.player = player;
+            handles = new int[player.getInventory().getSize()];
+            rebuild();
+        }
+
+        private void rebuild() {
+            registry = plugin.getItemManager().getRegistry();
+            Arrays.fill(handles, -1);
+            occupied.clear();
+            dirtySlots.clear();
+            for (int slot = 0; slot < handles.length; slot++) {
+                set(slot, getHandle(player.getInventory().getItem(slot)));
+            }
+        }
+
+        private int getHandle(ItemStack item) {
+            try {
+                SpecialItem specialItem = plugin.getItemManager().getSpecialItem(item);
+                return specialItem != null ? specialItem.getHandle() : -1;
+            } catch (IllegalArgumentException e) {
+                return -1;
+            }
+        }
+
+        private void set(int slot, int handle) {
+            handles[slot] = handle;
+            occupied.set(slot, handle >= 0);
+        }
+
+        private void markDirty(int slot) {
+            if (slot >= 0 && slot < handles.length) {
+                dirtySlots.set(slot);
+                schedule();
+            }
+        }
+
+        private void markAllDirty() {
+            dirtySlots.set(0, handles.length);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled) {
+                scheduled = true;
+                scheduleFlush(this);
+            }
+        }
+
+        private void flush() {
+            scheduled = false;
+            if (registry != plugin.getItemManager().getRegistry()) {
+                // Handles changed due to a reload
+                rebuild();
+                return;
+            }
+            for (int slot = dirtySlots.nextSetBit(0); slot >= 0; slot = dirtySlots.nextSetBit(slot + 1)) {
+                set(slot, getHandle(player.getInventory().getItem(slot)));
+            }
+            dirtySlots.clear();
+        }
+
+        /**
+         * Check every slot and fix wrong entries
+         * @return The amount of wrong entries
+         */
+        private int verify() {
+            int wrong = 0;
+            for (int slot = 0; slot < handles.length; slot++) {
+                int handle = getHandle(player.getInventory().getItem(slot));
+                if (handles[slot] != handle) {
+                    set(slot, handle);
+                    wrong++;
+                }
+            }
+            return wrong;
+        }
+    }
+}
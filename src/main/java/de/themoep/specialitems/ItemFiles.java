@@ -0,0 +1,571 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * Loads items from the items folder in which every item has its own file named after its id.
+ * The size, modification time and hash of every file is remembered so that only the items
+ * whose files changed need to be parsed again when reloading.
+ * The parsed values of the files are also written to a binary cache so that files which didn't change
+ * since the last start don't need to be parsed as YAML again. Only the YAML parsing is skipped, the
+ * items, actions, recipes and permissions are still built from the cached values and items in the
+ * config.yml aren't cached at all.
+ * Changes made through the plugin are written in the background. Changes to the same file that are made
+ * shortly after each other are combined into one write and older contents never replace newer ones.
+ */
+public class ItemFiles {
+    private static final String EXTENSION = ".yml";
+    private static final int CACHE_MAGIC = 0x53494346;
+    private static final int CACHE_FORMAT = 1;
+    private static final long WRITE_DELAY_TICKS = 20;
+
+    private final SpecialItems plugin;
+    private final File folder;
+    private final File cacheFile;
+    private final String serverVersion;
+    private final Map<String, ItemFile> files = new TreeMap<>();
+    private final Object writeLock = new Object();
+    private boolean cacheEnabled = false;
+    private Map<String, CachedFile> cache = null;
+    private volatile WatchService watchService = null;
+    private BukkitTask watchTask = null;
+
+    public ItemFiles(SpecialItems plugin) {
+        this.plugin = plugin;
+        this.folder = new File(plugin.getDataFolder(), "items");
+        this.cacheFile = new File(plugin.getDataFolder(), "items.cache");
+        this.serverVersion = plugin.getServer().getVersion() + "|" + plugin.getServer().getBukkitVersion()
+                + "|" + plugin.getDescription().getVersion();
+    }
+
+    /**
+     * Apply the item file settings from the config
+     * @param enabled   Whether or not items should be loaded from the items folder
+     * @param watch     Whether or not the folder should be watched for changes to reload them automatically
+     * @param cache     Whether or not the parsed files should be cached in a binary file
+     */
+    public void setup(boolean enabled, boolean watch, boolean cache) {
+        stopWatching();
+        synchronized (this) {
+            cacheEnabled = cache;
+        }
+        if (!enabled) {
+            synchronized (this) {
+                files.clear();
+            }
+            return;
+        }
+        if (!folder.exists() && !folder.mkdirs()) {
+            plugin.getLogger().log(Level.WARNING, "Could not create the items folder!");
+            return;
+        }
+        if (watch) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                folder.toPath().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                watchTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::pollChanges, 20, 20);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not watch the items folder for changes!", e);
+                stopWatching();
+            }
+        }
+    }
+
+    private void pollChanges() {
+        WatchService watchService = this.watchService;
+        if (watchService == null) {
+            return;
+        }
+        boolean changed = false;
+        try {
+            WatchKey key;
+            // Drain all events so that multiple changes only cause one reload
+            while ((key = watchService.poll()) != null) {
+                changed |= !key.pollEvents().isEmpty();
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Watching was stopped while this task was still running
+            return;
+        }
+        if (changed) {
+            plugin.getServer().getScheduler().runTask(plugin, () -> plugin.reloadItemFiles(e -> {
+                if (e != null) {
+                    plugin.getLogger().log(Level.SEVERE, "Error while reloading changed item files!", e);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Stop watching the folder, e.g. when disabling. The poll task is cancelled before the
+     * service gets closed, a poll that is already running stops when it notices the closed service.
+     */
+    public void stopWatching() {
+        if (watchTask != null) {
+            watchTask.cancel();
+            watchTask = null;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {}
+            watchService = null;
+        }
+    }
+
+    /**
+     * Check all files of the items folder for changes and parse the ones that changed in parallel.
+     * This doesn't access the server so it can be called off the main thread.
+     * @param pool  The pool to parse the items in
+     * @return The amount of files that were added, changed or removed
+     */
+    public synchronized int scan(ForkJoinPool pool) {
+        File[] found = folder.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(EXTENSION));
+        if (found == null) {
+            int removed = files.size();
+            files.clear();
+            return removed;
+        }
+
+        Map<String, File> current = new HashMap<>();
+        for (File file : found) {
+            current.put(file.getName(), file);
+        }
+        int changes = 0;
+        boolean cacheOutdated = false;
+        for (Iterator<String> it = files.keySet().iterator(); it.hasNext();) {
+            if (!current.containsKey(it.next())) {
+                it.remove();
+                changes++;
+                cacheOutdated = true;
+            }
+        }
+
+        if (cache == null && cacheEnabled && files.isEmpty()) {
+            cache = readCache();
+        }
+        Map<String, CachedFile> cache = this.cache != null ? this.cache : Collections.<String, CachedFile>emptyMap();
+
+        List<File> toCheck = new ArrayList<>();
+        for (File file : found) {
+            ItemFile itemFile = files.get(file.getName());
+            if (itemFile == null || itemFile.size != file.length() || itemFile.lastModified != file.lastModified()) {
+                toCheck.add(file);
+            }
+        }
+        List<ItemFile> checked = pool.submit(() -> toCheck.parallelStream()
+                .map(file -> {
+                    ItemFile itemFile = read(file);
+                    if (itemFile != null && !itemFile.hasSameContent(files.get(file.getName()))) {
+                        CachedFile cached = cache.get(itemFile.name);
+                        if (cached == null || !Arrays.equals(cached.hash, itemFile.hash) || !itemFile.restore(cached.values)) {
+                            itemFile.parse();
+                        }
+                    }
+                    return itemFile;
+                })
+                .filter(itemFile -> itemFile != null)
+                .collect(Collectors.toList())
+        ).join();
+        for (ItemFile itemFile : checked) {
+            ItemFile previous = files.get(itemFile.name);
+            if (itemFile.hasSameContent(previous)) {
+                // Only touched, keep the parsed item
+                previous.size = itemFile.size;
+                previous.lastModified = itemFile.lastModified;
+            } else {
+                files.put(itemFile.name, itemFile);
+                changes++;
+                cacheOutdated |= !itemFile.fromCache;
+            }
+        }
+        // The cache is only needed for the first load
+        this.cache = Collections.emptyMap();
+        if (cacheEnabled && cacheOutdated) {
+            writeCache();
+        }
+        return changes;
+    }
+
+    /**
+     * Read the cache file. It is memory mapped as most of it will be read.
+     * @return The cached files by name, empty if there is no cache or it was written by another version
+     */
+    private Map<String, CachedFile> readCache() {
+        Map<String, CachedFile> cache = new HashMap<>();
+        if (!cacheFile.isFile()) {
+            return cache;
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_FORMAT || !serverVersion.equals(readString(buffer))) {
+                plugin.getLogger().log(Level.INFO, "Item cache is from another version and will be rebuilt");
+                return cache;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String name = readString(buffer);
+                byte[] hash = readBytes(buffer);
+                byte[] values = readBytes(buffer);
+                cache.put(name, new CachedFile(hash, values));
+            }
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not read the item cache, all item files will be parsed!", e);
+            cache.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Write all parsed files to the cache file. The file is replaced atomically.
+     */
+    private void writeCache() {
+        File temp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            List<ItemFile> cached = new ArrayList<>();
+            for (ItemFile itemFile : files.values()) {
+                if (itemFile.loaded != null) {
+                    cached.add(itemFile);
+                }
+            }
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(CACHE_FORMAT);
+            writeBytes(out, serverVersion.getBytes(StandardCharsets.UTF_8));
+            out.writeInt(cached.size());
+            for (ItemFile itemFile : cached) {
+                writeBytes(out, itemFile.name.getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, itemFile.hash);
+                writeBytes(out, serialize(itemFile.config));
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write the item cache!", e);
+            return;
+        }
+        try {
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not write the item cache!", e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Serialize the values of a config. ItemStacks and other serializable objects are written
+     * in their serialized form so that they don't need to be parsed from YAML again.
+     */
+    private static byte[] serialize(ConfigurationSection config) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(toMap(config));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static LinkedHashMap<String, Object> toMap(ConfigurationSection section) {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : section.getValues(false).entrySet()) {
+            if (entry.getValue() instanceof ConfigurationSection) {
+                map.put(entry.getKey(), toMap((ConfigurationSection) entry.getValue()));
+            } else {
+                map.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Read a file and hash its content
+     * @return The file or <tt>null</tt> if it couldn't be read, the error is logged
+     */
+    private ItemFile read(File file) {
+        try {
+            // Stat before reading so that a change while reading is picked up by the next scan
+            long size = file.length();
+            long lastModified = file.lastModified();
+            byte[] content = Files.readAllBytes(file.toPath());
+            return new ItemFile(file.getName(), size, lastModified, content, hash(content));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not read item file " + file.getName() + "!", e);
+            return null;
+        }
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get copies of all items that were loaded from files so that they can be used in a new registry
+     */
+    synchronized List<ItemRegistry.LoadedItem> getLoadedItems() {
+        List<ItemRegistry.LoadedItem> loadedItems = new ArrayList<>();
+        for (ItemFile itemFile : files.values()) {
+            if (itemFile.loaded != null) {
+                loadedItems.add(itemFile.loaded.copy());
+            }
+        }
+        return loadedItems;
+    }
+
+    /**
+     * Check whether or not an item was loaded from a file
+     * @param id The id of the item
+     */
+    public synchronized boolean contains(String id) {
+        return getFile(id) != null;
+    }
+
+    private ItemFile getFile(String id) {
+        for (ItemFile itemFile : files.values()) {
+            if (itemFile.id.equals(id)) {
+                return itemFile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the loaded item of a file after its config was changed with {@link #set(String, String, Object)}
+     * @param id     The id of the item
+     * @param loaded The newly loaded item
+     */
+    synchronized void setLoaded(String id, ItemRegistry.LoadedItem loaded) {
+        ItemFile itemFile = getFile(id);
+        if (itemFile != null) {
+            itemFile.loaded = loaded;
+        }
+    }
+
+    /**
+     * Set a value of an item's file and write it in the background. Needs to be called on the main thread.
+     * @param id    The id of the item
+     * @param key   The path of the value inside the item's config
+     * @param value The value to set
+     * @return The updated config of the item or <tt>null</tt> if it wasn't loaded from a file
+     */
+    public synchronized ConfigurationSection set(String id, String key, Object value) {
+        ItemFile itemFile = getFile(id);
+        if (itemFile == null || itemFile.loaded == null) {
+            // Don't overwrite files that couldn't be loaded
+            return null;
+        }
+        if (itemFile.fromCache) {
+            // Restored configs have no comments, read the file so that they don't get lost
+            try {
+                YamlConfiguration config = new YamlConfiguration();
+                config.load(new File(folder, itemFile.name));
+                itemFile.config = config;
+                itemFile.fromCache = false;
+            } catch (IOException | InvalidConfigurationException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not read item file " + itemFile.name + "!", e);
+            }
+        }
+        itemFile.config.set(key, value);
+        byte[] content = itemFile.config.saveToString().getBytes(StandardCharsets.UTF_8);
+        // Remember the hash so that our own write isn't seen as a change
+        itemFile.hash = hash(content);
+        itemFile.pendingContent = content;
+        itemFile.version++;
+        if (itemFile.pendingWrite == null) {
+            itemFile.pendingWrite = plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+                byte[] snapshot;
+                long snapshotVersion;
+                synchronized (ItemFiles.this) {
+                    itemFile.pendingWrite = null;
+                    snapshot = itemFile.pendingContent;
+                    snapshotVersion = itemFile.version;
+                }
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> write(itemFile, snapshot, snapshotVersion));
+            }, WRITE_DELAY_TICKS);
+        }
+        return itemFile.config;
+    }
+
+    /**
+     * Write all pending changes directly, e.g. when disabling. Needs to be called on the main thread.
+     */
+    public synchronized void flush() {
+        for (ItemFile itemFile : files.values()) {
+            if (itemFile.pendingWrite != null) {
+                itemFile.pendingWrite.cancel();
+                itemFile.pendingWrite = null;
+            }
+            if (itemFile.pendingContent != null) {
+                write(itemFile, itemFile.pendingContent, itemFile.version);
+            }
+        }
+    }
+
+    private void write(ItemFile itemFile, byte[] content, long contentVersion) {
+        synchronized (writeLock) {
+            if (contentVersion <= itemFile.writtenVersion) {
+                // A newer content was already written
+                return;
+            }
+            File temp = new File(folder, itemFile.name + ".tmp");
+            try {
+                Files.write(temp.toPath(), content);
+                Files.move(temp.toPath(), new File(folder, itemFile.name).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                itemFile.writtenVersion = contentVersion;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Could not save item file " + itemFile.name + "!", e);
+            }
+        }
+    }
+
+    private class ItemFile {
+        private final String name;
+        private final String id;
+        private byte[] content;
+        private long size;
+        private long lastModified;
+        private byte[] hash;
+        private YamlConfiguration config = null;
+        private ItemRegistry.LoadedItem loaded = null;
+        private boolean fromCache = false;
+        private byte[] pendingContent = null;
+        private long version = 0;
+        private long writtenVersion = 0;
+        private BukkitTask pendingWrite = null;
+
+        private ItemFile(String name, long size, long lastModified, byte[] content, byte[] hash) {
+            this.name = name;
+            this.id = name.substring(0, name.length() - EXTENSION.length()).toLowerCase(Locale.ROOT);
+            this.size = size;
+            this.lastModified = lastModified;
+            this.content = content;
+            this.hash = hash;
+        }
+
+        private boolean hasSameContent(ItemFile other) {
+            return other != null && Arrays.equals(hash, other.hash);
+        }
+
+        private void parse() {
+            try {
+                config = new YamlConfiguration();
+                config.loadFromString(new String(content, StandardCharsets.UTF_8));
+                loaded = ItemRegistry.loadItem(plugin, id, config);
+            } catch (InvalidConfigurationException e) {
+                plugin.getLogger().log(Level.SEVERE, "Item file " + name + " is not valid YAML!", e);
+            }
+            content = null;
+        }
+
+        /**
+         * Load the item from its cached values instead of parsing the file's YAML
+         * @return <tt>true</tt> if it was loaded; <tt>false</tt> if the cached values couldn't be read
+         */
+        private boolean restore(byte[] values) {
+            try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(values))) {
+                Map<?, ?> map = (Map<?, ?>) in.readObject();
+                config = new YamlConfiguration();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (entry.getValue() instanceof Map) {
+                        config.createSection(String.valueOf(entry.getKey()), (Map<?, ?>) entry.getValue());
+                    } else {
+                        config.set(String.valueOf(entry.getKey()), entry.getValue());
+                    }
+                }
+                loaded = ItemRegistry.loadItem(plugin, id, config);
+                fromCache = true;
+                content = null;
+                return true;
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                plugin.getLogger().log(Level.FINE, "Could not restore " + name + " from the item cache", e);
+                config = null;
+                loaded = null;
+                return false;
+            }
+        }
+    }
+
+    private static class CachedFile {
+        private final byte[] hash;
+        private final byte[] values;
+
+        private CachedFile(byte[] hash, byte[] values) {
+            this.hash = hash;
+            this.values = values;
+        }
+    }
+}
@@ -19,25 +19,44 @@ package de.themoep.specialitems;
  */
 
 import org.bukkit.ChatColor;
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
-import org.bukkit.event.inventory.InventoryMoveItemEvent;
-import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 
+/**
+ * Shows all special items in a paged inventory. The contents of the pages are only built once
+ * per loaded registry and filter when they are first viewed and then copied into the inventory of each viewer.
+ */
 public class ItemGui implements Listener {
+    private static final int MAX_SIZE = 54;
+    private static final int PAGE_ITEMS = MAX_SIZE - 9;
+    private static final int PREVIOUS_SLOT = MAX_SIZE - 9;
+    private static final int INFO_SLOT = MAX_SIZE - 5;
+    private static final int NEXT_SLOT = MAX_SIZE - 1;
 
     private final SpecialItems plugin;
-    private Set<UUID> viewers = new HashSet<>();
+    private final Set<Session> sessions = new HashSet<>();
+
+    private ItemRegistry cachedRegistry = null;
+    private final Map<String, Pages> pageCache = new HashMap<>();
 
     public ItemGui(SpecialItems plugin) {
         this.plugin = plugin;
@@ -45,30 +64,91 @@ public class ItemGui implements Listener {
     }
 
     public void show(Player player) {
+        show(player, null);
+    }
+
+    /**
+     * Show the gui to a player
+     * @param player The player to show the gui to
+     * @param filter Only show items whose category matches or whose id contains this, <tt>null</tt> to show all
+     */
+    public void show(Player player, String filter) {
         player.closeInventory();
-        viewers.add(player.getUniqueId());
-        int invSize = plugin.getItemManager().getSpecialItems().size();
-        invSize = invSize + 9 - (invSize % 9);
-        Inventory inv = plugin.getServer().createInventory(null, invSize, plugin.getName());
-        for (SpecialItem item : plugin.getItemManager().getSpecialItems()) {
-            inv.addItem(item.getItem());
-        }
-        player.openInventory(inv);
+        Pages pages = getPages(filter != null ? filter.toLowerCase() : "");
+        Session session = new Session(pages);
+        ItemStack[] contents = pages.get(0);
+        session.inventory = plugin.getServer().createInventory(session, contents.length, plugin.getName());
+        session.inventory.setContents(contents);
+        player.openInventory(session.inventory);
+    }
+
+    /**
+     * Get the pages for a filter, they are only built once for every registry
+     */
+    private Pages getPages(String filter) {
+        ItemRegistry registry = plugin.getItemManager().getRegistry();
+        if (registry != cachedRegistry) {
+            pageCache.clear();
+            cachedRegistry = registry;
+        }
+        return pageCache.computeIfAbsent(filter, f -> buildPages(registry, f));
+    }
+
+    private static Pages buildPages(ItemRegistry registry, String filter) {
+        List<SpecialItem> items = new ArrayList<>();
+        for (SpecialItem item : registry.getSpecialItems()) {
+            if (item.hasItem() && matches(item, filter)) {
+                items.add(item);
+            }
+        }
+        return new Pages(items);
+    }
+
+    private static boolean matches(SpecialItem item, String filter) {
+        return filter.isEmpty()
+                || filter.equalsIgnoreCase(item.getCategory())
+                || item.getId().contains(filter);
+    }
+
+    private static ItemStack createControl(Material material, String name) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName(name);
+        item.setItemMeta(meta);
+        return item;
     }
 
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
-        if (viewers.contains(event.getWhoClicked().getUniqueId())) {
-            event.setCancelled(true);
-            if (event.isLeftClick() && event.getClickedInventory() == event.getView().getTopInventory()) {
-                if (plugin.checkPerm(event.getWhoClicked(), "specialitems.gui.take", "gui.take")) {
-                    if (event.getWhoClicked().getInventory().addItem(event.getCurrentItem()).size() == 0) {
-                        if (event.getWhoClicked() instanceof Player) {
-                            ((Player) event.getWhoClicked()).updateInventory();
-                        }
-                    } else {
-                        event.getWhoClicked().sendMessage(plugin.getTag() + ChatColor.RED + " You need an empty slot in your inventory!");
+        InventoryHolder holder = event.getView().getTopInventory().getHolder();
+        if (!(holder instanceof Session)) {
+            return;
+        }
+        Session session = (Session) holder;
+        event.setCancelled(true);
+        if (event.getClickedInventory() != event.getView().getTopInventory() || event.getCurrentItem() == null) {
+            return;
+        }
+        if (session.pages.count > 1 && event.getSlot() >= PAGE_ITEMS) {
+            if (event.getSlot() == PREVIOUS_SLOT && session.page > 0) {
+                session.setPage(session.page - 1);
+            } else if (event.getSlot() == NEXT_SLOT && session.page + 1 < session.pages.count) {
+                session.setPage(session.page + 1);
+            }
+            return;
+        }
+        if (event.isLeftClick()) {
+            if (plugin.checkPerm(event.getWhoClicked(), "specialitems.gui.take", "gui.take")) {
+                boolean added = event.getWhoClicked().getInventory().addItem(event.getCurrentItem()).size() == 0;
+                if (event.getWhoClicked() instanceof Player) {
+                    plugin.getInventoryIndex().invalidate((Player) event.getWhoClicked());
+                }
+                if (added) {
+                    if (event.getWhoClicked() instanceof Player) {
+                        ((Player) event.getWhoClicked()).updateInventory();
                     }
+                } else {
+                    event.getWhoClicked().sendMessage(plugin.getTag() + ChatColor.RED + " You need an empty slot in your inventory!");
                 }
             }
         }
@@ -76,40 +156,123 @@ public class ItemGui implements Listener {
 
     @EventHandler
     public void onInventoryDrag(InventoryDragEvent event) {
-        if (event.getWhoClicked().getOpenInventory() == event.getView().getTopInventory() && viewers.contains(event.getWhoClicked().getUniqueId())) {
+        if (event.getView().getTopInventory().getHolder() instanceof Session) {
             event.setCancelled(true);
         }
     }
 
     @EventHandler
-    public void onInventoryClose(InventoryCloseEvent event) {
-        if (viewers.contains(event.getPlayer().getUniqueId())) {
-            viewers.remove(event.getPlayer().getUniqueId());
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        if (event.getInventory().getHolder() instanceof Session) {
+            sessions.add((Session) event.getInventory().getHolder());
         }
     }
 
     @EventHandler
-    public void onLogout(PlayerQuitEvent event) {
-        if (viewers.contains(event.getPlayer().getUniqueId())) {
-            viewers.remove(event.getPlayer().getUniqueId());
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getInventory().getHolder() instanceof Session) {
+            sessions.remove(event.getInventory().getHolder());
         }
     }
 
     @EventHandler
     public void onTeleport(PlayerTeleportEvent event) {
-        if (viewers.contains(event.getPlayer().getUniqueId())) {
+        if (event.getPlayer().getOpenInventory().getTopInventory().getHolder() instanceof Session) {
             event.getPlayer().closeInventory();
-            viewers.remove(event.getPlayer().getUniqueId());
         }
     }
 
     public void destroy() {
-        for (UUID id : viewers) {
-            Player player = plugin.getServer().getPlayer(id);
-            if (player != null && player.isOnline()) {
+        for (Session session : new ArrayList<>(sessions)) {
+            for (Player player : session.getViewers()) {
                 player.closeInventory();
             }
         }
-        viewers.clear();
+        sessions.clear();
+        pageCache.clear();
+        cachedRegistry = null;
+    }
+
+    /**
+     * The gui that a player has open
+     */
+    private static class Session implements InventoryHolder {
+        private final Pages pages;
+        private Inventory inventory;
+        private int page = 0;
+
+        private Session(Pages pages) {
+            this.pages = pages;
+        }
+
+        private void setPage(int page) {
+            this.page = page;
+            inventory.setContents(pages.get(page));
+        }
+
+        private List<Player> getViewers() {
+            if (inventory == null) {
+                return Collections.emptyList();
+            }
+            List<Player> players = new ArrayList<>();
+            inventory.getViewers().forEach(viewer -> {
+                if (viewer instanceof Player) {
+                    players.add((Player) viewer);
+                }
+            });
+            return players;
+        }
+
+        @Override
+        public Inventory getInventory() {
+            return inventory;
+        }
+    }
+
+    /**
+     * The pages of a filter. The ItemStacks of a page are only created when it is viewed the first time.
+     */
+    private static class Pages {
+        private final List<SpecialItem> items;
+        private final int count;
+        private final ItemStack[][] built;
+
+        private Pages(List<SpecialItem> items) {
+            this.items = items;
+            this.count = items.size() <= MAX_SIZE ? 1 : (items.size() + PAGE_ITEMS - 1) / PAGE_ITEMS;
+            this.built = new ItemStack[count][];
+        }
+
+        private ItemStack[] get(int page) {
+            if (built[page] == null) {
+                built[page] = build(page);
+            }
+            return built[page];
+        }
+
+        private ItemStack[] build(int page) {
+            if (count == 1) {
+                // Everything fits, no need for navigation
+                ItemStack[] contents = new ItemStack[Math.max(9, (items.size() + 8) / 9 * 9)];
+                for (int i = 0; i < items.size(); i++) {
+                    contents[i] = items.get(i).getItem();
+                }
+                return contents;
+            }
+
+            ItemStack[] contents = new ItemStack[MAX_SIZE];
+            List<SpecialItem> pageItems = items.subList(page * PAGE_ITEMS, Math.min(items.size(), (page + 1) * PAGE_ITEMS));
+            for (int i = 0; i < pageItems.size(); i++) {
+                contents[i] = pageItems.get(i).getItem();
+            }
+            if (page > 0) {
+                contents[PREVIOUS_SLOT] = createControl(Material.ARROW, ChatColor.YELLOW + "Previous page");
+            }
+            contents[INFO_SLOT] = createControl(Material.PAPER, ChatColor.YELLOW + "Page " + (page + 1) + "/" + count);
+            if (page + 1 < count) {
+                contents[NEXT_SLOT] = createControl(Material.ARROW, ChatColor.YELLOW + "Next page");
+            }
+            return contents;
+        }
     }
 }
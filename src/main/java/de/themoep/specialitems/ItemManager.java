@@ -18,17 +18,13 @@ package de.themoep.specialitems;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-import de.themoep.specialitems.actions.ActionSet;
 import de.themoep.specialitems.actions.Trigger;
 import de.themoep.specialitems.actions.TriggerType;
-import org.bukkit.Material;
+import org.bukkit.Keyed;
 import org.bukkit.NamespacedKey;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.inventory.FurnaceRecipe;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.Recipe;
-import org.bukkit.inventory.ShapedRecipe;
-import org.bukkit.inventory.ShapelessRecipe;
 import org.bukkit.permissions.Permission;
 
 import java.util.ArrayList;
@@ -36,160 +32,199 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 
 public class ItemManager {
     private final SpecialItems plugin;
+    private final ForkJoinPool pool;
 
-    private Map<String, SpecialItem> itemMap;
+    private volatile ItemRegistry registry = ItemRegistry.empty();
+    private final Map<NamespacedKey, String> registeredRecipes = new HashMap<>();
+    private final String namespace;
+    private final ItemFiles itemFiles;
+    private volatile List<ItemRegistry.LoadedItem> configItems = new ArrayList<>();
 
     public ItemManager(SpecialItems plugin) {
         this.plugin = plugin;
-        int itemsLoaded = loadItems();
-        plugin.getLogger().log(Level.INFO, itemsLoaded + " special items loaded!");
+        this.namespace = plugin.getName().toLowerCase(Locale.ROOT);
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.itemFiles = new ItemFiles(plugin);
     }
 
     /**
-     * Load the items from the plugin's config.yml
-     * @return
+     * Load the items from a config and the items folder into a new registry.
+     * Item files that didn't change since the last load are not parsed again.
+     * This doesn't access the server and can be called off the main thread.
+     * @param config The config to load the items from
+     * @param settings The settings to use
+     * @return The new registry, it needs to be applied on the main thread with {@link #apply(LoadedRegistry)}
      */
-    private int loadItems() {
-        // reset item map
-        itemMap = new HashMap<>();
+    public LoadedRegistry loadItems(ConfigurationSection config, Settings settings) {
+        List<ItemRegistry.LoadedItem> configItems = ItemRegistry.loadItems(plugin, pool, config.getConfigurationSection("items"));
+        List<ItemRegistry.LoadedItem> loadedItems = configItems;
+        if (settings.isItemFiles()) {
+            loadedItems = new ArrayList<>(loadedItems);
+            itemFiles.scan(pool);
+            loadedItems.addAll(itemFiles.getLoadedItems());
+        }
+        return new LoadedRegistry(ItemRegistry.create(plugin, loadedItems, settings), configItems);
+    }
 
-        // reset recipes
-        Iterator<Recipe> recipes = plugin.getServer().recipeIterator();
-        while (recipes.hasNext()) {
-            Recipe recipe = recipes.next();
-            if (SpecialItem.getId(recipe.getResult()) != null) {
-                recipes.remove();
-            }
+    /**
+     * Parse only the item files that changed and create a new registry with them and all unchanged items.
+     * This doesn't access the server and can be called off the main thread.
+     * @param settings The settings to use
+     * @return The new registry or <tt>null</tt> if no file changed
+     */
+    public ItemRegistry loadChangedItems(Settings settings) {
+        if (itemFiles.scan(pool) == 0) {
+            return null;
+        }
+        List<ItemRegistry.LoadedItem> loadedItems = new ArrayList<>();
+        for (ItemRegistry.LoadedItem loaded : configItems) {
+            loadedItems.add(loaded.copy());
         }
+        loadedItems.addAll(itemFiles.getLoadedItems());
+        return ItemRegistry.create(plugin, loadedItems, settings);
+    }
+
+    /**
+     * Make a fully loaded registry the active one and remember its config items for partial reloads.
+     * Needs to be called on the main thread.
+     * @param loaded The loaded registry to apply
+     */
+    public void apply(LoadedRegistry loaded) {
+        configItems = loaded.configItems;
+        apply(loaded.registry);
+    }
+
+    /**
+     * Register the recipes and permissions of a registry with the server and make it the active one.
+     * Needs to be called on the main thread.
+     * @param newRegistry The registry to apply
+     */
+    public void apply(ItemRegistry newRegistry) {
+        updateRecipes(newRegistry);
 
-        ConfigurationSection items = plugin.getConfig().getConfigurationSection("items");
-        if (items == null || items.getKeys(false).size() == 0) {
-            plugin.getLogger().log(Level.WARNING, "No special items configured?");
-            return 0;
+        for (SpecialItem item : newRegistry.getSpecialItems()) {
+            registerPermissions(item, newRegistry);
         }
-        List<String> failedRecipes = new ArrayList<>();
-        for (String id : items.getKeys(false)) {
-            try {
-                ConfigurationSection itemSection = items.getConfigurationSection(id);
-                SpecialItem item = new SpecialItem(
-                        id,
-                        itemSection.getString("displayname"),
-                        itemSection.getItemStack("item"),
-                        new ActionSet(itemSection.getConfigurationSection("actions")),
-                        itemSection.getStringList("lore")
-                );
-                itemMap.put(item.getId(), item);
 
-                // Register recipe
-                ConfigurationSection recipeSection = itemSection.getConfigurationSection("recipe");
-                if (recipeSection != null && item.getItem() != null) {
-                    Recipe recipe = null;
-                    try {
-                        String recipeType = recipeSection.getString("type");
-                        if ("shapeless".equalsIgnoreCase(recipeType)) {
-                            recipe = new ShapelessRecipe(new NamespacedKey(plugin, item.getId()), item.getItem());
-                            for (String matStr : recipeSection.getConfigurationSection("materials").getKeys(false)) {
-                                Material mat = Material.valueOf(matStr.toUpperCase());
-                                ((ShapelessRecipe) recipe).addIngredient(
-                                        recipeSection.getInt("materials." + matStr), mat
-                                );
-                            }
-                        } else if ("shaped".equalsIgnoreCase(recipeType)) {
-                            recipe = new ShapedRecipe(new NamespacedKey(plugin, item.getId()), item.getItem());
-                            List<String> shape = recipeSection.getStringList("shape");
-                            ((ShapedRecipe) recipe).shape(shape.toArray(new String[shape.size()]));
-                            for (String rKey : recipeSection.getConfigurationSection("keys").getKeys(false)) {
-                                if (rKey.length() > 1) {
-                                    throw new IllegalArgumentException(
-                                            "Shaped craft key " + rKey + " has to be a char and only be 1 long!"
-                                    );
-                                }
-                                Material mat = Material.valueOf(recipeSection.getString("keys." + rKey).toUpperCase());
-                                ((ShapedRecipe) recipe).setIngredient(rKey.toCharArray()[0], mat);
-                            }
-                        } else if ("furnace".equalsIgnoreCase(recipeType)) {
-                            recipe = new FurnaceRecipe(new NamespacedKey(
-                                    plugin,
-                                    item.getId()),
-                                    item.getItem(),
-                                    Material.valueOf(recipeSection.getString("input")),
-                                    (float) recipeSection.getDouble("experience", 0),
-                                    recipeSection.getInt("time", 200)
-                            );
-                            ((FurnaceRecipe) recipe).setExperience((float) recipeSection.getDouble("exp"));
-                        } else {
-                            throw new IllegalArgumentException(recipeType + " is not a supported or valid recipe type!");
-                        }
-                    } catch (IllegalArgumentException e) {
-                        plugin.getLogger().log(Level.SEVERE, "Could not load recipe for " + id + "!", e);
-                    }
-                    if (recipe != null) {
-                        try {
-                            if (!plugin.getServer().addRecipe(recipe)) {
-                                failedRecipes.add(id);
-                            }
-                        } catch (IllegalStateException e) {
-                            failedRecipes.add(id);
-                        }
-                    }
-                }
+        plugin.getMetrics().update(newRegistry);
+        registry = newRegistry;
+        plugin.getTriggerListeners().update(newRegistry);
+        plugin.getLogger().log(Level.INFO, newRegistry.size() + " special items loaded!");
+    }
 
-                // Register permissions
-                if (plugin.getConfig().getBoolean("permissions.use")) {
-                    Permission usePerm = new Permission("specialitems.item." + id.toLowerCase() + ".use");
-                    try {
-                        plugin.getServer().getPluginManager().addPermission(usePerm);
-                    } catch (IllegalArgumentException e) {
-                        // Permission is already defined
-                        usePerm = plugin.getServer().getPluginManager().getPermission(usePerm.getName());
-                    }
-                    if (plugin.getConfig().getBoolean("permissions.usepertrigger")) {
-                        for (TriggerType trigger : TriggerType.values()) {
-                            Permission triggerPerm = new Permission("specialitems.item." + id.toLowerCase() + ".use." + trigger.toString().toLowerCase());
-                            triggerPerm.addParent(usePerm, true);
-                            try {
-                                plugin.getServer().getPluginManager().addPermission(usePerm);
-                            } catch (IllegalArgumentException e) {
-                                // Permission is already defined
-                            }
-                        }
-                    }
-                }
-                if (plugin.getConfig().getBoolean("permissions.craft")) {
-                    Permission craftPerm = new Permission("specialitems.item." + id.toLowerCase() + ".craft");
-                    try {
-                        plugin.getServer().getPluginManager().addPermission(craftPerm);
-                    } catch (IllegalArgumentException e) {
-                        // Permission is already defined
-                    }
+    /**
+     * Only remove the recipes that changed or were removed and add the ones that changed or are new
+     * instead of touching every recipe of the server. Clients get resynced once at the end.
+     */
+    private void updateRecipes(ItemRegistry newRegistry) {
+        boolean changed = false;
+        Iterator<Map.Entry<NamespacedKey, String>> registered = registeredRecipes.entrySet().iterator();
+        while (registered.hasNext()) {
+            Map.Entry<NamespacedKey, String> entry = registered.next();
+            if (!entry.getValue().equals(newRegistry.getRecipeSignature(entry.getKey()))) {
+                plugin.getServer().removeRecipe(entry.getKey());
+                registered.remove();
+                changed = true;
+            }
+        }
+
+        List<NamespacedKey> failedRecipes = new ArrayList<>();
+        for (Map.Entry<NamespacedKey, Recipe> entry : newRegistry.getRecipes().entrySet()) {
+            NamespacedKey key = entry.getKey();
+            if (registeredRecipes.containsKey(key)) {
+                continue;
+            }
+            if (plugin.getServer().getRecipe(key) != null) {
+                // Left over from a previous instance of the plugin, e.g. after a server reload
+                plugin.getServer().removeRecipe(key);
+            }
+            try {
+                if (plugin.getServer().addRecipe(entry.getValue())) {
+                    registeredRecipes.put(key, newRegistry.getRecipeSignature(key));
+                    changed = true;
+                } else {
+                    failedRecipes.add(key);
                 }
-                if (plugin.getConfig().getBoolean("permissions.drop")) {
-                    Permission dropPerm = new Permission("specialitems.item." + id.toLowerCase() + ".drop");
+            } catch (IllegalStateException e) {
+                failedRecipes.add(key);
+            }
+        }
+        if (!failedRecipes.isEmpty()) {
+            plugin.getLogger().log(Level.WARNING, "Unable to add recipes " + failedRecipes + "!");
+        }
+        if (changed) {
+            plugin.getServer().updateRecipes();
+        }
+    }
+
+    private void registerPermissions(SpecialItem item, ItemRegistry registry) {
+        if (plugin.getSettings().isUsePermission()) {
+            Permission usePerm = new Permission("specialitems.item." + item.getId() + ".use");
+            try {
+                plugin.getServer().getPluginManager().addPermission(usePerm);
+            } catch (IllegalArgumentException e) {
+                // Permission is already defined
+                usePerm = plugin.getServer().getPluginManager().getPermission(usePerm.getName());
+            }
+            if (plugin.getSettings().isUsePermissionPerTrigger()) {
+                for (TriggerType type : TriggerType.values()) {
+                    Permission triggerPerm = new Permission(registry.getUsePermission(item, type));
+                    triggerPerm.addParent(usePerm, true);
                     try {
-                        plugin.getServer().getPluginManager().addPermission(dropPerm);
+                        plugin.getServer().getPluginManager().addPermission(triggerPerm);
                     } catch (IllegalArgumentException e) {
                         // Permission is already defined
                     }
                 }
+            }
+        }
+        if (plugin.getSettings().isCraftPermission()) {
+            Permission craftPerm = new Permission("specialitems.item." + item.getId() + ".craft");
+            try {
+                plugin.getServer().getPluginManager().addPermission(craftPerm);
             } catch (IllegalArgumentException e) {
-                plugin.getLogger().log(Level.SEVERE, "Error while loading item " + id + "!", e);
+                // Permission is already defined
             }
         }
-
-        if (!failedRecipes.isEmpty()) {
-            plugin.getLogger().log(Level.WARNING, "Unable to add recipe for items " + failedRecipes + ". If this is a reload and you edited the config then existing recipes will not be edited due to limitations in the server!");
+        if (plugin.getSettings().isDropPermission()) {
+            Permission dropPerm = new Permission("specialitems.item." + item.getId() + ".drop");
+            try {
+                plugin.getServer().getPluginManager().addPermission(dropPerm);
+            } catch (IllegalArgumentException e) {
+                // Permission is already defined
+            }
         }
+    }
+
+    /**
+     * Stop the pool that is used for loading items
+     */
+    public void destroy() {
+        itemFiles.stopWatching();
+        itemFiles.flush();
+        pool.shutdown();
+    }
 
-        return itemMap.size();
+    public ItemFiles getItemFiles() {
+        return itemFiles;
+    }
+
+    /**
+     * Get the currently active registry. It is immutable and will be replaced as a whole on reloads.
+     */
+    public ItemRegistry getRegistry() {
+        return registry;
     }
 
     public Collection<SpecialItem> getSpecialItems() {
-        return itemMap.values();
+        return registry.getSpecialItems();
     }
 
     /**
@@ -198,7 +233,60 @@ public class ItemManager {
      * @return The saved special item. Null if none was found. (Use the manipulation methods to change configs!)
      */
     public SpecialItem getSpecialItem(String id) {
-        return itemMap.get(id.toLowerCase());
+        return registry.getSpecialItem(id.toLowerCase());
+    }
+
+    /**
+     * Get the permission a player needs to use an item with a certain trigger
+     * @param item The special item
+     * @param type The type of trigger
+     * @return The permission node or <tt>null</tt> if no permission is required
+     */
+    public String getUsePermission(SpecialItem item, TriggerType type) {
+        return registry.getUsePermission(item, type);
+    }
+
+    /**
+     * Get the amount of item handles that were assigned in the active registry
+     */
+    public int getHandleCount() {
+        return registry.size();
+    }
+
+    /**
+     * Get the special item that a recipe creates by the recipe's key.
+     * Recipes of other plugins and vanilla are rejected by their namespace without any lookup.
+     * @param recipe The recipe
+     * @return The item or <tt>null</tt> if it isn't a recipe of a special item
+     */
+    public SpecialItem getRecipeItem(Recipe recipe) {
+        if (!(recipe instanceof Keyed)) {
+            return null;
+        }
+        NamespacedKey key = ((Keyed) recipe).getKey();
+        if (!namespace.equals(key.getNamespace())) {
+            return null;
+        }
+        return registry.getRecipeItem(key);
+    }
+
+    /**
+     * Check whether or not an ItemStack has a material that any special item uses.
+     * This does not access the item's meta and should be used to reject unrelated items early.
+     * @param item The ItemStack to check
+     * @return <tt>true</tt> if it could be a special item; <tt>false</tt> if it definitely isn't one
+     */
+    public boolean couldBeSpecialItem(ItemStack item) {
+        if (item == null) {
+            return false;
+        }
+        if (!registry.hasMaterial(item.getType())) {
+            if (plugin.getMetrics().isEnabled()) {
+                plugin.getMetrics().recordFastReject();
+            }
+            return false;
+        }
+        return true;
     }
 
     /**
@@ -207,8 +295,14 @@ public class ItemManager {
      * @return The SpecialItem or <tt>null</tt> if it isn't one or none was found with the encoded item name
      */
     public SpecialItem getSpecialItem(ItemStack item) throws IllegalArgumentException {
+        if (!couldBeSpecialItem(item)) {
+            return null;
+        }
         String id = SpecialItem.getId(item);
         if (id == null) {
+            if (plugin.getMetrics().isEnabled()) {
+                plugin.getMetrics().recordReject();
+            }
             return null;
         }
         return getSpecialItem(id);
@@ -226,21 +320,32 @@ public class ItemManager {
             SpecialItem item = trigger.hasSpecialItem() ? trigger.getSpecialItem() : getSpecialItem(trigger.getItem());
             if (item != null) {
                 trigger.setSpecialItem(item);
+                if (!item.getActionSet().hasActions(trigger.getType())) {
+                    return trigger;
+                }
                 boolean hasPermission = true;
-                if (plugin.getConfig().getBoolean("permissions.usepertrigger")) {
-                    hasPermission = plugin.checkPerm(
-                            trigger.getPlayer(),
-                            "specialitems.item." + item.getId() + ".use." + trigger.toString().toLowerCase(),
-                            "use"
-                    );
-                } else if (plugin.getConfig().getBoolean("permissions.use")) {
-                    hasPermission = plugin.checkPerm(
-                            trigger.getPlayer(),
-                            "specialitems.item." + item.getId() + ".use",
-                            "use"
-                    );
+                String permission = getUsePermission(item, trigger.getType());
+                if (permission != null) {
+                    hasPermission = plugin.getPermissionCache().hasPermission(trigger.getPlayer(), item, trigger.getType(), permission);
+                    if (!hasPermission) {
+                        trigger.getPlayer().sendMessage(plugin.getLang("nopermission.use", "perm", permission));
+                    }
                 }
-                if (hasPermission) {
+                ExecutionMetrics metrics = plugin.getMetrics().isEnabled() ? plugin.getMetrics() : null;
+                if (!hasPermission) {
+                    if (metrics != null) {
+                        metrics.recordPermissionDenied(item);
+                    }
+                } else if (!plugin.getCooldownManager().use(trigger.getPlayer(), item, trigger.getType())) {
+                    if (metrics != null) {
+                        metrics.recordCooldown(item);
+                    }
+                    return item.getActionSet().skip(trigger);
+                } else if (metrics != null) {
+                    long start = System.nanoTime();
+                    item.getActionSet().execute(trigger, metrics);
+                    metrics.recordExecution(item, trigger.getType(), System.nanoTime() - start);
+                } else {
                     return item.getActionSet().execute(trigger);
                 }
             }
@@ -251,19 +356,56 @@ public class ItemManager {
     }
 
     public void setValue(String id, String key, Object object) {
-        SpecialItem item = itemMap.get(id.toLowerCase());
+        SpecialItem item = getSpecialItem(id);
         if (item != null) {
-            plugin.getConfig().set("items." + item.getId() + "." + key.toLowerCase(), object);
-            ConfigurationSection itemSection = plugin.getConfig().getConfigurationSection("items." + item.getId());
-            item = new SpecialItem(
-                    item.getId(),
-                    itemSection.getString("displayname"),
-                    itemSection.getItemStack("item"),
-                    new ActionSet(itemSection.getConfigurationSection("actions")),
-                    itemSection.getStringList("lore")
-            );
-            itemMap.put(item.getId(), item);
-            plugin.saveConfig();
+            int handle = item.getHandle();
+            ConfigurationSection section = itemFiles.set(item.getId(), key.toLowerCase(), object);
+            boolean fromFile = section != null;
+            if (!fromFile) {
+                plugin.getConfig().set("items." + item.getId() + "." + key.toLowerCase(), object);
+                section = plugin.getConfig().getConfigurationSection("items." + item.getId());
+            }
+            ItemRegistry.LoadedItem loaded = ItemRegistry.loadItem(plugin, item.getId(), section);
+            if (loaded == null) {
+                return;
+            }
+            // Update the cached items so that partial reloads don't restore the old values
+            if (fromFile) {
+                itemFiles.setLoaded(item.getId(), loaded.copy());
+            } else {
+                List<ItemRegistry.LoadedItem> newConfigItems = new ArrayList<>(configItems);
+                for (int i = 0; i < newConfigItems.size(); i++) {
+                    if (newConfigItems.get(i).getItem().getId().equals(item.getId())) {
+                        newConfigItems.set(i, loaded.copy());
+                    }
+                }
+                configItems = newConfigItems;
+            }
+            item = loaded.getItem();
+            item.setHandle(handle);
+            // Only add the new material as existing items might still use the old one
+            registry = registry.withItem(item);
+            plugin.getTriggerListeners().update(registry);
+            if (!fromFile) {
+                plugin.saveConfig();
+            }
+        }
+    }
+
+    /**
+     * A registry loaded from the config and the item files together with the items of the config
+     */
+    public static class LoadedRegistry {
+        private final ItemRegistry registry;
+        private final List<ItemRegistry.LoadedItem> configItems;
+
+        private LoadedRegistry(ItemRegistry registry, List<ItemRegistry.LoadedItem> configItems) {
+            this.registry = registry;
+            this.configItems = configItems;
+        }
+
+        public ItemRegistry getRegistry() {
+            return registry;
         }
     }
 }
@@ -0,0 +1,247 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataHolder;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Migrates items that still have their id hidden in the lore to the persistent data container.
+ * Players and chunks that were fully migrated are marked in their own persistent data container.
+ */
+public class ItemMigrator implements Listener {
+    private final SpecialItems plugin;
+    private final NamespacedKey migratedKey;
+    private final Deque<MigrationTask> queue = new ArrayDeque<>();
+
+    private boolean enabled = false;
+    private int slotsPerTick = 256;
+    private BukkitTask task = null;
+    private long migratedItems = 0;
+
+    public ItemMigrator(SpecialItems plugin) {
+        this.plugin = plugin;
+        this.migratedKey = new NamespacedKey(plugin, "migrated");
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Apply the migration settings from the config
+     * @param enabled       Whether or not to migrate items in the background
+     * @param complete      Whether or not the migration was marked as complete
+     * @param slotsPerTick  How many inventory slots to check per tick
+     */
+    public void setup(boolean enabled, boolean complete, int slotsPerTick) {
+        this.enabled = enabled && !complete;
+        this.slotsPerTick = Math.max(1, slotsPerTick);
+        SpecialItem.setLegacyIds(!complete);
+        if (!this.enabled) {
+            queue.clear();
+            stop();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        if (enabled && !isMigrated(player)) {
+            queue(new MigrationTask(player, Arrays.asList(player.getInventory(), player.getEnderChest())) {
+                @Override
+                boolean isValid() {
+                    return player.isOnline();
+                }
+            });
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        if (enabled) {
+            queue(new MigrationTask(null, Arrays.asList(event.getInventory())));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        if (enabled && !event.isNewChunk() && !isMigrated(chunk)) {
+            queue(new MigrationTask(chunk, null) {
+                @Override
+                boolean isValid() {
+                    return chunk.isLoaded();
+                }
+
+                @Override
+                List<Inventory> getInventories() {
+                    if (inventories == null) {
+                        // Only get the tile entities when this task runs as creating their states isn't free
+                        inventories = new ArrayList<>();
+                        for (BlockState state : chunk.getTileEntities()) {
+                            if (state instanceof Container) {
+                                inventories.add(((Container) state).getInventory());
+                            }
+                        }
+                    }
+                    return inventories;
+                }
+            });
+        }
+    }
+
+    private boolean isMigrated(PersistentDataHolder holder) {
+        return holder.getPersistentDataContainer().has(migratedKey, PersistentDataType.BYTE);
+    }
+
+    private void queue(MigrationTask migrationTask) {
+        queue.add(migrationTask);
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+        }
+    }
+
+    /**
+     * Work on the queued tasks until the slots for this tick are used up
+     */
+    private void tick() {
+        int budget = slotsPerTick;
+        while (budget > 0 && !queue.isEmpty()) {
+            MigrationTask migrationTask = queue.peek();
+            if (!migrationTask.isValid()) {
+                queue.poll();
+                continue;
+            }
+            budget -= migrationTask.run(budget);
+            if (migrationTask.isDone()) {
+                queue.poll();
+                if (migrationTask.holder != null) {
+                    migrationTask.holder.getPersistentDataContainer().set(migratedKey, PersistentDataType.BYTE, (byte) 1);
+                }
+            }
+        }
+        if (queue.isEmpty()) {
+            stop();
+        }
+    }
+
+    private void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Stop the migration and drop all queued tasks
+     */
+    public void destroy() {
+        queue.clear();
+        stop();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getMigratedItems() {
+        return migratedItems;
+    }
+
+    private class MigrationTask {
+        final PersistentDataHolder holder;
+        List<Inventory> inventories;
+        private int inventory = 0;
+        private int slot = 0;
+
+        /**
+         * @param holder        The holder to mark as migrated once done, <tt>null</tt> if it shouldn't be marked
+         * @param inventories   The inventories to migrate
+         */
+        MigrationTask(PersistentDataHolder holder, List<Inventory> inventories) {
+            this.holder = holder;
+            this.inventories = inventories;
+        }
+
+        boolean isValid() {
+            return true;
+        }
+
+        List<Inventory> getInventories() {
+            return inventories;
+        }
+
+        /**
+         * Migrate the next slots of this task
+         * @param budget The maximum amount of slots to check
+         * @return The amount of slots that were checked
+         */
+        int run(int budget) {
+            int checked = 0;
+            List<Inventory> inventories = getInventories();
+            while (checked < budget && inventory < inventories.size()) {
+                Inventory inv = inventories.get(inventory);
+                if (slot >= inv.getSize()) {
+                    inventory++;
+                    slot = 0;
+                    continue;
+                }
+                ItemStack item = inv.getItem(slot);
+                if (plugin.getItemManager().couldBeSpecialItem(item) && SpecialItem.migrate(item)) {
+                    inv.setItem(slot, item);
+                    if (inv.getHolder() instanceof HumanEntity) {
+                        plugin.getInventoryIndex().markDirty((HumanEntity) inv.getHolder(), slot);
+                    }
+                    migratedItems++;
+                }
+                slot++;
+                checked++;
+            }
+            // Always count at least one slot so empty tasks can't stall the tick
+            return Math.max(checked, 1);
+        }
+
+        boolean isDone() {
+            return inventory >= getInventories().size();
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.actions.ActionSet;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.Keyed;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.inventory.FurnaceRecipe;
+import org.bukkit.inventory.Recipe;
+import org.bukkit.inventory.ShapedRecipe;
+import org.bukkit.inventory.ShapelessRecipe;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable snapshot of all loaded special items. Registries are built off the main
+ * thread and then swapped in as a whole so that readers never see a half loaded state.
+ */
+public class ItemRegistry {
+    private static final ItemRegistry EMPTY = new ItemRegistry(null, Collections.<LoadedItem>emptyList(), false, false);
+
+    private final Map<String, SpecialItem> itemMap;
+    private final SpecialItem[] handles;
+    private final BitSet materials;
+    private final String[][] usePermissions;
+    private final Map<NamespacedKey, Recipe> recipes;
+    private final Map<NamespacedKey, String> recipeSignatures;
+    private final Map<NamespacedKey, Integer> recipeHandles;
+    private final CooldownTable cooldowns;
+    private final boolean[] usedTriggers;
+    private final boolean placeableItems;
+
+    private ItemRegistry(Plugin plugin, List<LoadedItem> loadedItems, boolean usePermissionPerTrigger, boolean usePermission) {
+        Map<String, SpecialItem> itemMap = new LinkedHashMap<>();
+        Map<NamespacedKey, Recipe> recipes = new LinkedHashMap<>();
+        Map<NamespacedKey, String> recipeSignatures = new HashMap<>();
+        Map<NamespacedKey, Integer> recipeHandles = new HashMap<>();
+        List<String[]> usePermissions = new ArrayList<>();
+        List<CooldownTable.Config> cooldownConfigs = new ArrayList<>();
+        List<String> cooldownIds = new ArrayList<>();
+        materials = new BitSet();
+        usedTriggers = new boolean[TriggerType.values().length];
+        boolean placeableItems = false;
+        for (LoadedItem loaded : loadedItems) {
+            SpecialItem item = loaded.item;
+            if (itemMap.containsKey(item.getId())) {
+                plugin.getLogger().log(Level.SEVERE, "Item " + item.getId() + " is configured multiple times! Ids are case insensitive.");
+                continue;
+            }
+            item.setHandle(itemMap.size());
+            usePermissions.add(buildUsePermissions(item, usePermissionPerTrigger, usePermission));
+            cooldownConfigs.add(loaded.cooldown);
+            cooldownIds.add(item.getId());
+            if (item.hasItem()) {
+                materials.set(item.getMaterial().ordinal());
+                placeableItems |= item.getMaterial().isBlock();
+            }
+            addUsedTriggers(usedTriggers, item);
+            if (loaded.recipe != null) {
+                NamespacedKey key = ((Keyed) loaded.recipe).getKey();
+                recipes.put(key, loaded.recipe);
+                recipeSignatures.put(key, loaded.recipeSignature);
+                recipeHandles.put(key, item.getHandle());
+            }
+            itemMap.put(item.getId(), item);
+        }
+        this.itemMap = Collections.unmodifiableMap(itemMap);
+        this.handles = itemMap.values().toArray(new SpecialItem[0]);
+        this.usePermissions = usePermissions.toArray(new String[0][]);
+        this.recipes = Collections.unmodifiableMap(recipes);
+        this.recipeSignatures = recipeSignatures;
+        this.recipeHandles = recipeHandles;
+        this.placeableItems = placeableItems;
+        this.cooldowns = cooldownConfigs.isEmpty() ? CooldownTable.empty() : new CooldownTable(cooldownIds, cooldownConfigs);
+    }
+
+    private ItemRegistry(ItemRegistry registry, SpecialItem item) {
+        Map<String, SpecialItem> itemMap = new LinkedHashMap<>(registry.itemMap);
+        itemMap.put(item.getId(), item);
+        this.itemMap = Collections.unmodifiableMap(itemMap);
+        handles = registry.handles.clone();
+        handles[item.getHandle()] = item;
+        materials = (BitSet) registry.materials.clone();
+        usedTriggers = registry.usedTriggers.clone();
+        addUsedTriggers(usedTriggers, item);
+        if (item.hasItem()) {
+            materials.set(item.getMaterial().ordinal());
+            placeableItems = registry.placeableItems || item.getMaterial().isBlock();
+        } else {
+            placeableItems = registry.placeableItems;
+        }
+        usePermissions = registry.usePermissions;
+        recipes = registry.recipes;
+        recipeSignatures = registry.recipeSignatures;
+        recipeHandles = registry.recipeHandles;
+        cooldowns = registry.cooldowns;
+    }
+
+    private static void addUsedTriggers(boolean[] usedTriggers, SpecialItem item) {
+        for (TriggerType type : TriggerType.values()) {
+            if (item.getActionSet().hasActions(type)) {
+                usedTriggers[type.ordinal()] = true;
+            }
+        }
+    }
+
+    /**
+     * Get an empty registry
+     */
+    public static ItemRegistry empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Load a new registry from the items config section. The items get parsed in parallel
+     * and this method doesn't access the server so it can be called off the main thread.
+     * @param plugin        The plugin which owns the recipes
+     * @param pool          The pool to parse the items in
+     * @param items         The section containing all item configs
+     * @param settings      The settings to use
+     * @return The new registry
+     */
+    public static ItemRegistry load(Plugin plugin, ForkJoinPool pool, ConfigurationSection items, Settings settings) {
+        return create(plugin, loadItems(plugin, pool, items), settings);
+    }
+
+    /**
+     * Create a registry from already loaded items. The items must not be used by another registry.
+     * @param plugin        The plugin which owns the recipes
+     * @param loadedItems   The loaded items
+     * @param settings      The settings to use
+     * @return The new registry
+     */
+    static ItemRegistry create(Plugin plugin, List<LoadedItem> loadedItems, Settings settings) {
+        if (loadedItems.isEmpty()) {
+            plugin.getLogger().log(Level.WARNING, "No special items configured?");
+            return EMPTY;
+        }
+        return new ItemRegistry(plugin, loadedItems, settings.isUsePermissionPerTrigger(), settings.isUsePermission());
+    }
+
+    /**
+     * Parse all items of a config section in parallel
+     * @param plugin    The plugin which owns the recipes
+     * @param pool      The pool to parse the items in
+     * @param items     The section containing all item configs
+     * @return The items that could be loaded
+     */
+    static List<LoadedItem> loadItems(Plugin plugin, ForkJoinPool pool, ConfigurationSection items) {
+        if (items == null || items.getKeys(false).isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> ids = new ArrayList<>(items.getKeys(false));
+        return pool.submit(() -> ids.parallelStream()
+                .map(id -> loadItem(plugin, id, items.getConfigurationSection(id)))
+                .filter(loaded -> loaded != null)
+                .collect(Collectors.toList())
+        ).join();
+    }
+
+    /**
+     * Parse an item and its recipe and cooldown config
+     * @return The loaded item or <tt>null</tt> if it is invalid, the error is logged
+     */
+    static LoadedItem loadItem(Plugin plugin, String id, ConfigurationSection itemSection) {
+        try {
+            if (itemSection == null) {
+                throw new IllegalArgumentException("Item config is not a section!");
+            }
+            SpecialItem item = loadItem(id, itemSection);
+            Recipe recipe = null;
+            String recipeSignature = null;
+            ConfigurationSection recipeSection = itemSection.getConfigurationSection("recipe");
+            if (recipeSection != null && item.hasItem()) {
+                try {
+                    recipe = loadRecipe(plugin, item, recipeSection);
+                    // The server's recipes can't be compared so we compare the config they were created from
+                    recipeSignature = recipeSection.getValues(true) + "|" + item.getItem();
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Could not load recipe for " + id + "!", e);
+                }
+            }
+            return new LoadedItem(item, recipe, recipeSignature, CooldownTable.Config.parse(itemSection));
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Error while loading item " + id + "!", e);
+        }
+        return null;
+    }
+
+    /**
+     * Load a special item from its config section
+     * @param id            The id of the item
+     * @param itemSection   The config section of the item
+     * @return The special item
+     * @throws IllegalArgumentException If the config is invalid
+     */
+    public static SpecialItem loadItem(String id, ConfigurationSection itemSection) throws IllegalArgumentException {
+        SpecialItem item = new SpecialItem(
+                id,
+                itemSection.getString("displayname"),
+                itemSection.getItemStack("item"),
+                new ActionSet(itemSection.getConfigurationSection("actions")),
+                itemSection.getStringList("lore")
+        );
+        item.setCommandPriority(itemSection.getInt("command-priority", 0));
+        item.setInlineCommands(itemSection.getBoolean("inline-commands", false));
+        item.setCategory(itemSection.getString("category"));
+        return item;
+    }
+
+    private static Recipe loadRecipe(Plugin plugin, SpecialItem item, ConfigurationSection recipeSection) throws IllegalArgumentException {
+        Recipe recipe;
+        String recipeType = recipeSection.getString("type");
+        if ("shapeless".equalsIgnoreCase(recipeType)) {
+            recipe = new ShapelessRecipe(new NamespacedKey(plugin, item.getId()), item.getItem());
+            for (String matStr : recipeSection.getConfigurationSection("materials").getKeys(false)) {
+                Material mat = Material.valueOf(matStr.toUpperCase());
+                ((ShapelessRecipe) recipe).addIngredient(
+                        recipeSection.getInt("materials." + matStr), mat
+                );
+            }
+        } else if ("shaped".equalsIgnoreCase(recipeType)) {
+            recipe = new ShapedRecipe(new NamespacedKey(plugin, item.getId()), item.getItem());
+            List<String> shape = recipeSection.getStringList("shape");
+            ((ShapedRecipe) recipe).shape(shape.toArray(new String[shape.size()]));
+            for (String rKey : recipeSection.getConfigurationSection("keys").getKeys(false)) {
+                if (rKey.length() > 1) {
+                    throw new IllegalArgumentException(
+                            "Shaped craft key " + rKey + " has to be a char and only be 1 long!"
+                    );
+                }
+                Material mat = Material.valueOf(recipeSection.getString("keys." + rKey).toUpperCase());
+                ((ShapedRecipe) recipe).setIngredient(rKey.toCharArray()[0], mat);
+            }
+        } else if ("furnace".equalsIgnoreCase(recipeType)) {
+            recipe = new FurnaceRecipe(new NamespacedKey(
+                    plugin,
+                    item.getId()),
+                    item.getItem(),
+                    Material.valueOf(recipeSection.getString("input")),
+                    (float) recipeSection.getDouble("experience", 0),
+                    recipeSection.getInt("time", 200)
+            );
+            ((FurnaceRecipe) recipe).setExperience((float) recipeSection.getDouble("exp"));
+        } else {
+            throw new IllegalArgumentException(recipeType + " is not a supported or valid recipe type!");
+        }
+        return recipe;
+    }
+
+    /**
+     * Build the permission nodes that are required to use an item, indexed by the trigger type's ordinal
+     * @return The permission nodes or <tt>null</tt> if no permission is required
+     */
+    private static String[] buildUsePermissions(SpecialItem item, boolean perTrigger, boolean perItem) {
+        if (!perTrigger && !perItem) {
+            return null;
+        }
+        TriggerType[] types = TriggerType.values();
+        String[] nodes = new String[types.length];
+        String itemPermission = "specialitems.item." + item.getId() + ".use";
+        for (TriggerType type : types) {
+            nodes[type.ordinal()] = perTrigger
+                    ? itemPermission + "." + type.toString().toLowerCase()
+                    : itemPermission;
+        }
+        return nodes;
+    }
+
+    /**
+     * Create a copy of this registry with an item replaced by a new version of it
+     * @param item The new item, needs to have the handle of the item it replaces
+     * @return The new registry
+     */
+    ItemRegistry withItem(SpecialItem item) {
+        if (item.getHandle() < 0 || item.getHandle() >= handles.length) {
+            throw new IllegalArgumentException("Item " + item.getId() + " has no handle of this registry!");
+        }
+        return new ItemRegistry(this, item);
+    }
+
+    public Collection<SpecialItem> getSpecialItems() {
+        return itemMap.values();
+    }
+
+    public SpecialItem getSpecialItem(String id) {
+        return itemMap.get(id);
+    }
+
+    /**
+     * Get an item by its handle
+     * @param handle The handle of the item
+     * @return The item or <tt>null</tt> if there is none with that handle
+     */
+    public SpecialItem getSpecialItem(int handle) {
+        return handle >= 0 && handle < handles.length ? handles[handle] : null;
+    }
+
+    public int size() {
+        return handles.length;
+    }
+
+    /**
+     * Check whether or not a material is used by any special item
+     */
+    public boolean hasMaterial(Material material) {
+        return materials.get(material.ordinal());
+    }
+
+    /**
+     * Check whether or not any item has actions for a trigger type
+     */
+    public boolean isTriggerUsed(TriggerType type) {
+        return usedTriggers[type.ordinal()];
+    }
+
+    /**
+     * Check whether or not any item is a block that could be placed
+     */
+    public boolean hasPlaceableItems() {
+        return placeableItems;
+    }
+
+    /**
+     * Get the permission a player needs to use an item with a certain trigger
+     * @return The permission node or <tt>null</tt> if no permission is required
+     */
+    public String getUsePermission(SpecialItem item, TriggerType type) {
+        if (item.getHandle() < 0 || item.getHandle() >= usePermissions.length || usePermissions[item.getHandle()] == null) {
+            return null;
+        }
+        return usePermissions[item.getHandle()][type.ordinal()];
+    }
+
+    /**
+     * Get the recipes of the items mapped by their key
+     */
+    public Map<NamespacedKey, Recipe> getRecipes() {
+        return recipes;
+    }
+
+    /**
+     * Get a string that represents the config a recipe was loaded from. If two registries return
+     * the same signature for a key then the recipe didn't change between them.
+     * @param key The key of the recipe
+     * @return The signature or <tt>null</tt> if this registry has no recipe with that key
+     */
+    public String getRecipeSignature(NamespacedKey key) {
+        return recipeSignatures.get(key);
+    }
+
+    /**
+     * Get the item that a recipe of this registry creates
+     * @param key The key of the recipe
+     * @return The item or <tt>null</tt> if this registry has no recipe with that key
+     */
+    public SpecialItem getRecipeItem(NamespacedKey key) {
+        Integer handle = recipeHandles.get(key);
+        return handle != null ? handles[handle] : null;
+    }
+
+    /**
+     * Get the cooldowns and rate limits of the items
+     */
+    public CooldownTable getCooldowns() {
+        return cooldowns;
+    }
+
+    static class LoadedItem {
+        private final SpecialItem item;
+        private final Recipe recipe;
+        private final String recipeSignature;
+        private final CooldownTable.Config cooldown;
+
+        private LoadedItem(SpecialItem item, Recipe recipe, String recipeSignature, CooldownTable.Config cooldown) {
+            this.item = item;
+            this.recipe = recipe;
+            this.recipeSignature = recipeSignature;
+            this.cooldown = cooldown;
+        }
+
+        /**
+         * Copy this item so that it can be used in another registry which sets its own handle
+         */
+        LoadedItem copy() {
+            return new LoadedItem(new SpecialItem(item), recipe, recipeSignature, cooldown);
+        }
+
+        SpecialItem getItem() {
+            return item;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Caches whether or not a player is allowed to use a special item with a certain trigger.
+ * Decisions are only valid for the registry whose item handles they are indexed by.
+ * They get invalidated on join, quit, world change, reload, when the player's op status changes
+ * and after a configurable time. Bukkit has no event for permission recalculations so changes by
+ * permission plugins are only picked up once the decisions expire, unless the plugin calls {@link #invalidate(Player)}.
+ */
+public class PermissionCache implements Listener {
+    private static final byte UNKNOWN = 0;
+    private static final byte ALLOWED = 1;
+    private static final byte DENIED = 2;
+    private static final int TRIGGER_COUNT = TriggerType.values().length;
+
+    private final SpecialItems plugin;
+    private final Map<UUID, PlayerDecisions> decisions = new HashMap<>();
+    private ItemRegistry registry = null;
+    private BukkitTask expiryTask = null;
+    private boolean enabled = true;
+
+    public PermissionCache(SpecialItems plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Clear the cache and set how long decisions should be cached
+     * @param expiryTicks The amount of ticks after which all decisions get cleared, 0 or less to not cache them
+     */
+    public void setup(int expiryTicks) {
+        invalidateAll();
+        enabled = expiryTicks > 0;
+        if (expiryTask != null) {
+            expiryTask.cancel();
+            expiryTask = null;
+        }
+        if (expiryTicks > 0) {
+            expiryTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::invalidateAll, expiryTicks, expiryTicks);
+        }
+    }
+
+    /**
+     * Check whether or not a player has the permission to use a special item with a certain trigger
+     * @param player     The player to check
+     * @param item       The special item
+     * @param type       The type of the trigger
+     * @param permission The permission node which is required for that item and trigger
+     * @return <tt>true</tt> if the player has the permission; <tt>false</tt> if not
+     */
+    public boolean hasPermission(Player player, SpecialItem item, TriggerType type, String permission) {
+        if (!enabled || item.getHandle() < 0) {
+            return player.hasPermission(permission);
+        }
+        if (registry != plugin.getItemManager().getRegistry()) {
+            // Handles might belong to other items after a reload
+            invalidateAll();
+            registry = plugin.getItemManager().getRegistry();
+        }
+        PlayerDecisions playerDecisions = decisions.get(player.getUniqueId());
+        if (playerDecisions == null || playerDecisions.op != player.isOp()) {
+            // Operators have all permissions so everything changes with the op status
+            playerDecisions = new PlayerDecisions(player.isOp());
+            decisions.put(player.getUniqueId(), playerDecisions);
+        }
+        if (playerDecisions.items.length <= item.getHandle()) {
+            byte[][] newDecisions = new byte[Math.max(plugin.getItemManager().getHandleCount(), item.getHandle() + 1)][];
+            System.arraycopy(playerDecisions.items, 0, newDecisions, 0, playerDecisions.items.length);
+            playerDecisions.items = newDecisions;
+        }
+        byte[] itemDecisions = playerDecisions.items[item.getHandle()];
+        if (itemDecisions == null) {
+            itemDecisions = new byte[TRIGGER_COUNT];
+            playerDecisions.items[item.getHandle()] = itemDecisions;
+        }
+        byte decision = itemDecisions[type.ordinal()];
+        if (decision == UNKNOWN) {
+            decision = player.hasPermission(permission) ? ALLOWED : DENIED;
+            itemDecisions[type.ordinal()] = decision;
+        }
+        return decision == ALLOWED;
+    }
+
+    /**
+     * Invalidate all cached decisions of a player. Should be called by other plugins when they changed permissions.
+     * @param player The player to invalidate the decisions of
+     */
+    public void invalidate(Player player) {
+        decisions.remove(player.getUniqueId());
+    }
+
+    /**
+     * Invalidate all cached decisions of all players
+     */
+    public void invalidateAll() {
+        decisions.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    private static class PlayerDecisions {
+        private final boolean op;
+        private byte[][] items = new byte[0][];
+
+        private PlayerDecisions(boolean op) {
+            this.op = op;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityRemoveEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps track of projectiles that were shot with a special item or launched by one of its actions.
+ * Tracked projectiles are looked up by their entity id. The item id is also stored in the projectile's
+ * persistent data so that projectiles that were unloaded or survived a restart can still be resolved.
+ */
+public class ProjectileTracker implements Listener {
+    private final SpecialItems plugin;
+    private final NamespacedKey key;
+    private final Map<Integer, TrackedProjectile> projectiles = new HashMap<>();
+
+    public ProjectileTracker(SpecialItems plugin) {
+        this.plugin = plugin;
+        this.key = new NamespacedKey(plugin, "projectile");
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Start tracking a projectile
+     * @param projectile    The projectile
+     * @param item          The special item it was shot with
+     * @param shooter       The player that shot it
+     */
+    public void track(Projectile projectile, SpecialItem item, Player shooter) {
+        projectiles.put(projectile.getEntityId(), new TrackedProjectile(
+                plugin.getItemManager().getRegistry(),
+                item.getHandle(),
+                item.getId(),
+                shooter.getUniqueId(),
+                projectile.getWorld().getFullTime()
+        ));
+        projectile.getPersistentDataContainer().set(key, PersistentDataType.STRING, item.getId());
+    }
+
+    /**
+     * Get the tracking info of a projectile
+     * @param projectile The projectile
+     * @return The info or <tt>null</tt> if it wasn't shot with a special item
+     */
+    public TrackedProjectile get(Entity projectile) {
+        TrackedProjectile tracked = projectiles.get(projectile.getEntityId());
+        if (tracked == null && projectile instanceof Projectile) {
+            // Not known in this session, check the persisted data
+            String id = projectile.getPersistentDataContainer().get(key, PersistentDataType.STRING);
+            if (id != null && ((Projectile) projectile).getShooter() instanceof Player) {
+                SpecialItem item = plugin.getItemManager().getSpecialItem(id);
+                if (item != null) {
+                    track((Projectile) projectile, item, (Player) ((Projectile) projectile).getShooter());
+                    tracked = projectiles.get(projectile.getEntityId());
+                }
+            }
+        }
+        return tracked;
+    }
+
+    /**
+     * Stop tracking a projectile in this session. Its persisted data is kept.
+     * @param projectile The projectile
+     */
+    public void untrack(Entity projectile) {
+        projectiles.remove(projectile.getEntityId());
+    }
+
+    /**
+     * Stop tracking a projectile after its final hit. Its persisted data is removed too
+     * so that it isn't tracked again if it bounces off or gets hit by something else.
+     * @param projectile The projectile
+     */
+    public void finish(Entity projectile) {
+        untrack(projectile);
+        projectile.getPersistentDataContainer().remove(key);
+    }
+
+    /**
+     * Get the amount of currently tracked projectiles
+     */
+    public int size() {
+        return projectiles.size();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRemove(EntityRemoveEvent event) {
+        if (event.getEntity() instanceof Projectile) {
+            untrack(event.getEntity());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onUnload(EntitiesUnloadEvent event) {
+        if (projectiles.isEmpty()) {
+            return;
+        }
+        for (Entity entity : event.getEntities()) {
+            if (entity instanceof Projectile) {
+                untrack(entity);
+            }
+        }
+    }
+
+    public class TrackedProjectile {
+        private final ItemRegistry registry;
+        private final int handle;
+        private final String itemId;
+        private final UUID shooter;
+        private final long launchTick;
+
+        private TrackedProjectile(ItemRegistry registry, int handle, String itemId, UUID shooter, long launchTick) {
+            this.registry = registry;
+            this.handle = handle;
+            this.itemId = itemId;
+            this.shooter = shooter;
+            this.launchTick = launchTick;
+        }
+
+        /**
+         * Get the special item that the projectile was shot with
+         * @return The item or <tt>null</tt> if it doesn't exist anymore
+         */
+        public SpecialItem getItem() {
+            ItemRegistry current = plugin.getItemManager().getRegistry();
+            if (current == registry) {
+                return current.getSpecialItem(handle);
+            }
+            // Handles changed due to a reload
+            return current.getSpecialItem(itemId);
+        }
+
+        /**
+         * Get the player that shot the projectile
+         * @return The player or <tt>null</tt> if they are offline
+         */
+        public Player getShooter() {
+            return plugin.getServer().getPlayer(shooter);
+        }
+
+        public UUID getShooterId() {
+            return shooter;
+        }
+
+        /**
+         * Get the full time of the world that the projectile was launched in at the time it was launched
+         */
+        public long getLaunchTick() {
+            return launchTick;
+        }
+    }
+}
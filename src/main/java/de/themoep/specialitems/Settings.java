@@ -0,0 +1,230 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the plugin's settings so that hot paths
+ * don't need to look up values in the configuration tree.
+ */
+public class Settings {
+    private final boolean usePermission;
+    private final boolean usePermissionPerTrigger;
+    private final boolean dropPermission;
+    private final boolean craftPermission;
+    private final int permissionCacheTicks;
+
+    private final boolean migrationEnabled;
+    private final boolean migrationComplete;
+    private final int migrationSlotsPerTick;
+
+    private final double targetRange;
+    private final double targetConeAngle;
+
+    private final boolean commandQueueEnabled;
+    private final long commandQueueBudgetNanos;
+    private final int commandQueueMaxPerSecond;
+    private final boolean sudoOp;
+
+    private final boolean itemFiles;
+    private final boolean itemFilesWatch;
+    private final boolean itemFilesCache;
+
+    private final boolean metricsEnabled;
+    private final int metricsDumpInterval;
+    private final String metricsDumpFile;
+
+    private final Map<String, String> lang;
+
+    public Settings(ConfigurationSection config) {
+        usePermission = config.getBoolean("permissions.use");
+        usePermissionPerTrigger = config.getBoolean("permissions.usepertrigger");
+        dropPermission = config.getBoolean("permissions.drop");
+        craftPermission = config.getBoolean("permissions.craft");
+        permissionCacheTicks = config.getInt("permissions.cache-ticks");
+
+        migrationEnabled = config.getBoolean("migration.enabled");
+        migrationComplete = config.getBoolean("migration.complete");
+        migrationSlotsPerTick = config.getInt("migration.slots-per-tick");
+
+        targetRange = config.getDouble("target.range");
+        targetConeAngle = config.getDouble("target.cone-angle");
+
+        commandQueueEnabled = config.getBoolean("commands.queue.enabled");
+        commandQueueBudgetNanos = config.getLong("commands.queue.budget-nanos");
+        commandQueueMaxPerSecond = config.getInt("commands.queue.max-per-second");
+        sudoOp = !"permission".equalsIgnoreCase(config.getString("commands.sudo-mode", "op"));
+
+        itemFiles = config.getBoolean("item-files.enabled");
+        itemFilesWatch = config.getBoolean("item-files.watch");
+        itemFilesCache = config.getBoolean("item-files.cache");
+
+        metricsEnabled = config.getBoolean("metrics.enabled");
+        metricsDumpInterval = config.getInt("metrics.dump-interval");
+        metricsDumpFile = config.getString("metrics.dump-file");
+
+        Map<String, String> lang = new HashMap<>();
+        ConfigurationSection langSection = config.getConfigurationSection("lang");
+        if (langSection != null) {
+            Set<String> keys = new HashSet<>(langSection.getKeys(true));
+            if (langSection.getDefaultSection() != null) {
+                keys.addAll(langSection.getDefaultSection().getKeys(true));
+            }
+            for (String key : keys) {
+                if (!langSection.isConfigurationSection(key)) {
+                    String message = langSection.getString(key);
+                    if (message != null) {
+                        lang.put(key, ChatColor.translateAlternateColorCodes('&', message));
+                    }
+                }
+            }
+        }
+        this.lang = Collections.unmodifiableMap(lang);
+    }
+
+    /**
+     * Whether or not using items requires a permission
+     */
+    public boolean isUsePermission() {
+        return usePermission;
+    }
+
+    /**
+     * Whether or not using items requires a permission per trigger
+     */
+    public boolean isUsePermissionPerTrigger() {
+        return usePermissionPerTrigger;
+    }
+
+    public boolean isDropPermission() {
+        return dropPermission;
+    }
+
+    public boolean isCraftPermission() {
+        return craftPermission;
+    }
+
+    public int getPermissionCacheTicks() {
+        return permissionCacheTicks;
+    }
+
+    public boolean isMigrationEnabled() {
+        return migrationEnabled;
+    }
+
+    public boolean isMigrationComplete() {
+        return migrationComplete;
+    }
+
+    public int getMigrationSlotsPerTick() {
+        return migrationSlotsPerTick;
+    }
+
+    /**
+     * The maximum distance in blocks at which targets for %target.*% variables are found
+     */
+    public double getTargetRange() {
+        return targetRange;
+    }
+
+    /**
+     * The maximum angle in degrees between the view direction and a target
+     */
+    public double getTargetConeAngle() {
+        return targetConeAngle;
+    }
+
+    /**
+     * Whether or not command actions should be queued and run spread over multiple ticks
+     */
+    public boolean isCommandQueueEnabled() {
+        return commandQueueEnabled;
+    }
+
+    public long getCommandQueueBudgetNanos() {
+        return commandQueueBudgetNanos;
+    }
+
+    public int getCommandQueueMaxPerSecond() {
+        return commandQueueMaxPerSecond;
+    }
+
+    /**
+     * Whether or not sudo commands should make the player an operator instead of granting permissions
+     */
+    public boolean isSudoOp() {
+        return sudoOp;
+    }
+
+    /**
+     * Whether or not items should also be loaded from one file per item in the items folder
+     */
+    public boolean isItemFiles() {
+        return itemFiles;
+    }
+
+    /**
+     * Whether or not the items folder should be watched to reload changed files automatically
+     */
+    public boolean isItemFilesWatch() {
+        return itemFilesWatch;
+    }
+
+    /**
+     * Whether or not parsed item files should be cached in a binary file to not parse unchanged files on startup
+     */
+    public boolean isItemFilesCache() {
+        return itemFilesCache;
+    }
+
+    /**
+     * Whether or not execution metrics should be recorded
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * The interval in seconds in which metrics get written to the dump file, 0 or less to disable
+     */
+    public int getMetricsDumpInterval() {
+        return metricsDumpInterval;
+    }
+
+    public String getMetricsDumpFile() {
+        return metricsDumpFile;
+    }
+
+    /**
+     * Get a language message with its color codes already translated
+     * @param key The key of the message relative to the lang section
+     * @return The message or <tt>null</tt> if none is configured
+     */
+    public String getLang(String key) {
+        return lang.get(key);
+    }
+}
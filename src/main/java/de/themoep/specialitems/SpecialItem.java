@@ -20,8 +20,11 @@ package de.themoep.specialitems;
 
 import de.themoep.specialitems.actions.ActionSet;
 import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
@@ -30,22 +33,35 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class SpecialItem {
+    private static boolean legacyIds = true;
+
     private String id;
     private String name;
-    private ItemStack item;
+    private final ItemStack baseItem;
+    private volatile ItemStack item = null;
     private ActionSet actions;
     private List<String> lore;
+    private int handle = -1;
+    private int commandPriority = 0;
+    private boolean inlineCommands = false;
+    private String category = null;
 
     public SpecialItem(String id, String name, ItemStack item, ActionSet actions, List<String> lore) {
         this.id = id.toLowerCase();
         this.name = name;
         this.actions = actions;
         this.lore = lore;
-        this.item = buildItemStack(item);
+        this.baseItem = item;
     }
 
     public SpecialItem(SpecialItem item) {
-        this(item.getId(), item.getName(), item.getItem(), item.getActionSet(), item.getLore());
+        this(item.getId(), item.getName(), item.baseItem, item.getActionSet(), item.getLore());
+        // The built ItemStack only depends on the copied values so it can be shared
+        this.item = item.item;
+        this.handle = item.getHandle();
+        this.commandPriority = item.getCommandPriority();
+        this.inlineCommands = item.isInlineCommands();
+        this.category = item.getCategory();
     }
 
     public String getId() {
@@ -56,10 +72,39 @@ public class SpecialItem {
         return name;
     }
 
+    /**
+     * Get the ItemStack of this item. It is only built the first time it is needed.
+     * @return The ItemStack or <tt>null</tt> if no item is configured
+     */
     public ItemStack getItem() {
+        ItemStack item = this.item;
+        if (item == null && baseItem != null) {
+            synchronized (this) {
+                item = this.item;
+                if (item == null) {
+                    item = buildItemStack(baseItem.clone());
+                    this.item = item;
+                }
+            }
+        }
         return item;
     }
 
+    /**
+     * Whether or not an item is configured, this doesn't build the ItemStack
+     */
+    public boolean hasItem() {
+        return baseItem != null;
+    }
+
+    /**
+     * Get the material of this item without building the ItemStack
+     * @return The material or <tt>null</tt> if no item is configured
+     */
+    public Material getMaterial() {
+        return baseItem != null ? baseItem.getType() : null;
+    }
+
     public List<String> getLore() {
         return lore;
     }
@@ -68,6 +113,53 @@ public class SpecialItem {
         return actions;
     }
 
+    /**
+     * Get the handle of this item. Handles are assigned when the items get loaded
+     * and can be used to index arrays that store information per item.
+     * @return The handle or -1 if this item wasn't loaded by the ItemManager
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    void setHandle(int handle) {
+        this.handle = handle;
+    }
+
+    /**
+     * Get the priority of this item's commands in the command queue, higher ones run first
+     */
+    public int getCommandPriority() {
+        return commandPriority;
+    }
+
+    void setCommandPriority(int commandPriority) {
+        this.commandPriority = commandPriority;
+    }
+
+    /**
+     * Whether or not the commands of this item always need to run directly instead of being queued
+     */
+    public boolean isInlineCommands() {
+        return inlineCommands;
+    }
+
+    void setInlineCommands(boolean inlineCommands) {
+        this.inlineCommands = inlineCommands;
+    }
+
+    /**
+     * Get the category of this item which can be used to filter the gui
+     * @return The category or <tt>null</tt> if it has none
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    void setCategory(String category) {
+        this.category = category;
+    }
+
     private ItemStack buildItemStack(ItemStack item) {
         if (item == null) {
             return null;
@@ -100,18 +192,56 @@ public class SpecialItem {
             if (tags.has(SpecialItems.KEY, PersistentDataType.STRING)) {
                 return tags.get(SpecialItems.KEY, PersistentDataType.STRING);
             }
-            if (meta.hasLore()
-                    && meta.getLore().get(meta.getLore().size() - 1).contains("SpecialItems")) {
-                String hidden = SpecialItem.getHiddenString(item);
-                if (hidden == null) {
-                    throw new IllegalArgumentException("Item should be a special item but no hidden id string was found?");
+            if (legacyIds && meta.hasLore()) {
+                String lastLine = meta.getLore().get(meta.getLore().size() - 1);
+                if (lastLine.contains("SpecialItems")) {
+                    String hidden = SpecialItem.getHiddenString(lastLine);
+                    if (hidden == null) {
+                        throw new IllegalArgumentException("Item should be a special item but no hidden id string was found?");
+                    }
+                    return hidden;
                 }
-                return hidden;
             }
         }
         return null;
     }
 
+    /**
+     * Set whether or not ids hidden in the lore by old versions should still be looked up.
+     * This can be disabled once all items have been migrated to the persistent data container.
+     * @param legacyIds Whether or not to look up legacy ids
+     */
+    public static void setLegacyIds(boolean legacyIds) {
+        SpecialItem.legacyIds = legacyIds;
+    }
+
+    /**
+     * Migrate an item that still has its id hidden in the lore to the persistent data container
+     * @param item The item to migrate, its meta gets updated in place
+     * @return <tt>true</tt> if the item was migrated; <tt>false</tt> if it wasn't a legacy special item
+     */
+    public static boolean migrate(ItemStack item) {
+        if (item == null || !item.hasItemMeta()) {
+            return false;
+        }
+        ItemMeta meta = item.getItemMeta();
+        PersistentDataContainer tags = meta.getPersistentDataContainer();
+        if (tags.has(SpecialItems.KEY, PersistentDataType.STRING) || !meta.hasLore()) {
+            return false;
+        }
+        String lastLine = meta.getLore().get(meta.getLore().size() - 1);
+        if (!lastLine.contains("SpecialItems")) {
+            return false;
+        }
+        String hidden = getHiddenString(lastLine);
+        if (hidden == null) {
+            return false;
+        }
+        tags.set(SpecialItems.KEY, PersistentDataType.STRING, hidden.toLowerCase());
+        item.setItemMeta(meta);
+        return true;
+    }
+
     /**
      * Hide a string inside another string with chat color characters
      * @param hidden The string to hide
@@ -140,11 +270,21 @@ public class SpecialItem {
      * Returns a hidden string in the itemstack which is hidden using the last lore line
      */
     public static String getHiddenString(ItemStack item) {
+        if (!item.hasItemMeta())
+            return null;
+        ItemMeta meta = item.getItemMeta();
+        if (!meta.hasLore())
+            return null;
+        return getHiddenString(meta.getLore().get(meta.getLore().size() - 1));
+    }
+
+    /**
+     * Returns a string hidden at the end of a lore line
+     */
+    public static String getHiddenString(String line) {
         // Only the color chars at the end of the string is it
         StringBuilder builder = new StringBuilder();
-        if (!item.hasItemMeta() || !item.getItemMeta().hasLore())
-            return null;
-        char[] chars = item.getItemMeta().getLore().get(item.getItemMeta().getLore().size() - 1).toCharArray();
+        char[] chars = line.toCharArray();
         for (int i = 0; i < chars.length; i++) {
             char c = chars[i];
             if (c == org.bukkit.ChatColor.COLOR_CHAR)
@@ -168,6 +308,10 @@ public class SpecialItem {
      * @return <tt>true</tt> if one was removed; <tt>false</tt> if none was found
      */
     public boolean isInInv(Inventory inventory) {
+        Player player = getIndexedPlayer(inventory);
+        if (player != null) {
+            return getPlugin().getInventoryIndex().contains(player, this);
+        }
         for (int i = 0; i < inventory.getSize(); i++) {
             ItemStack item = inventory.getItem(i);
             if (id.equals(getId(item))) {
@@ -183,6 +327,10 @@ public class SpecialItem {
      * @return The number of items found
      */
     public int countInInv(Inventory inventory) {
+        Player player = getIndexedPlayer(inventory);
+        if (player != null) {
+            return getPlugin().getInventoryIndex().count(player, this);
+        }
         int amount = 0;
         for (int i = 0; i < inventory.getSize(); i++) {
             ItemStack item = inventory.getItem(i);
@@ -200,6 +348,10 @@ public class SpecialItem {
      * @return <tt>true</tt> if some where removed; <tt>false</tt> if none was found
      */
     public boolean removeFromInv(Inventory inventory, int amount) {
+        Player player = getIndexedPlayer(inventory);
+        if (player != null) {
+            return getPlugin().getInventoryIndex().remove(player, this, amount);
+        }
         for (int i = 0; i < inventory.getSize(); i++) {
             ItemStack item = inventory.getItem(i);
             if (id.equals(getId(item))) {
@@ -214,4 +366,21 @@ public class SpecialItem {
         }
         return false;
     }
+
+    /**
+     * Get the player whose inventory index can be used to look for this item in an inventory
+     * @param inventory The inventory
+     * @return The player or <tt>null</tt> if it isn't a player's inventory or this item isn't currently loaded
+     */
+    private Player getIndexedPlayer(Inventory inventory) {
+        if (inventory instanceof PlayerInventory && inventory.getHolder() instanceof Player
+                && getPlugin().getItemManager().getSpecialItem(id) == this) {
+            return (Player) inventory.getHolder();
+        }
+        return null;
+    }
+
+    private static SpecialItems getPlugin() {
+        return SpecialItems.getPlugin(SpecialItems.class);
+    }
 }
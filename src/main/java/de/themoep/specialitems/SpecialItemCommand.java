@@ -42,8 +42,35 @@ public class SpecialItemCommand implements CommandExecutor {
         if (args.length > 0) {
             if ("reload".equalsIgnoreCase(args[0])) {
                 if (plugin.checkPerm(sender, "specialitems.command.reload")) {
-                    plugin.loadConfig();
-                    sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Config reloaded!");
+                    if (args.length > 1 && "items".equalsIgnoreCase(args[1])) {
+                        if (!plugin.getSettings().isItemFiles()) {
+                            sender.sendMessage(plugin.getTag() + ChatColor.RED + " Item files are not enabled!");
+                            return true;
+                        }
+                        boolean started = plugin.reloadItemFiles(e -> {
+                            if (e == null) {
+                                sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Changed item files reloaded!");
+                            } else {
+                                sender.sendMessage(plugin.getTag() + ChatColor.RED + " Error while reloading the item files, the old items stay active! " + e.getMessage());
+                            }
+                        });
+                        if (!started) {
+                            sender.sendMessage(plugin.getTag() + ChatColor.RED + " The config is already being reloaded!");
+                        }
+                        return true;
+                    }
+                    boolean started = plugin.reloadAsync(e -> {
+                        if (e == null) {
+                            sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Config reloaded!");
+                        } else {
+                            sender.sendMessage(plugin.getTag() + ChatColor.RED + " Error while reloading the config, the old one stays active! " + e.getMessage());
+                        }
+                    });
+                    if (started) {
+                        sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Reloading config...");
+                    } else {
+                        sender.sendMessage(plugin.getTag() + ChatColor.RED + " The config is already being reloaded!");
+                    }
                 }
             } else if ("list".equalsIgnoreCase(args[0])) {
                 if (plugin.checkPerm(sender, "specialitems.command.list")) {
@@ -79,14 +106,15 @@ public class SpecialItemCommand implements CommandExecutor {
                         player = (Player) sender;
                     } else {
                         sender.sendMessage(ChatColor.RED
-                                + " Use /" + label + " gui <playername> " +
+                                + " Use /" + label + " gui * <playername> " +
                                 "to open the GUI for a player from the console!");
                         return true;
                     }
                     if (sender != player) {
                         sender.sendMessage(ChatColor.YELLOW + "Opened gui for " + player.getName());
                     }
-                    plugin.getGui().show(player);
+                    String filter = args.length > 1 && !"*".equals(args[1]) ? args[1] : null;
+                    plugin.getGui().show(player, filter);
                 }
             } else if ("get".equalsIgnoreCase(args[0])) {
                 if (plugin.checkPerm(sender, "specialitems.command.get")) {
@@ -114,7 +142,9 @@ public class SpecialItemCommand implements CommandExecutor {
                                 return true;
                             }
 
-                            if (player.getInventory().addItem(item.getItem()).size() > 0) {
+                            boolean full = player.getInventory().addItem(item.getItem()).size() > 0;
+                            plugin.getInventoryIndex().invalidate(player);
+                            if (full) {
                                 sender.sendMessage(plugin.getTag() + ChatColor.RED
                                         + " Could not give item as you don't have any space iny our inventory!");
                             } else {
@@ -183,6 +213,60 @@ public class SpecialItemCommand implements CommandExecutor {
                     sender.sendMessage(plugin.getTag() + ChatColor.RED + " Usage: /" + label + " set <id> [name <name> | item [<material>] | <configpath> <value>]");
                 }
 
+            } else if ("migration".equalsIgnoreCase(args[0])) {
+                if (plugin.checkPerm(sender, "specialitems.command.migration")) {
+                    if (args.length > 1 && "complete".equalsIgnoreCase(args[1])) {
+                        plugin.getConfig().set("migration.complete", true);
+                        plugin.saveConfig();
+                        plugin.loadSettings();
+                        sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Marked migration as complete! Ids hidden in the lore will no longer be checked.");
+                    } else {
+                        sender.sendMessage(new String[]{
+                                ChatColor.YELLOW + "Legacy item migration:",
+                                ChatColor.YELLOW + " Enabled: " + ChatColor.RESET + plugin.getMigrator().isEnabled(),
+                                ChatColor.YELLOW + " Complete: " + ChatColor.RESET + plugin.getSettings().isMigrationComplete(),
+                                ChatColor.YELLOW + " Queued: " + ChatColor.RESET + plugin.getMigrator().getQueueSize(),
+                                ChatColor.YELLOW + " Migrated items: " + ChatColor.RESET + plugin.getMigrator().getMigratedItems(),
+                        });
+                        sender.sendMessage(ChatColor.GRAY + "Use /" + label + " migration complete once all items are migrated.");
+                    }
+                }
+            } else if ("queue".equalsIgnoreCase(args[0])) {
+                if (plugin.checkPerm(sender, "specialitems.command.queue")) {
+                    CommandQueue queue = plugin.getCommandQueue();
+                    sender.sendMessage(new String[]{
+                            ChatColor.YELLOW + "Command queue:",
+                            ChatColor.YELLOW + " Enabled: " + ChatColor.RESET + queue.isEnabled(),
+                            ChatColor.YELLOW + " Queued: " + ChatColor.RESET + queue.getQueueSize() + ChatColor.GRAY + " (peak " + queue.getPeakQueueSize() + ")",
+                            ChatColor.YELLOW + " Total queued: " + ChatColor.RESET + queue.getQueuedCommands(),
+                            ChatColor.YELLOW + " Executed: " + ChatColor.RESET + queue.getExecutedCommands(),
+                            ChatColor.YELLOW + " Dropped: " + ChatColor.RESET + queue.getDroppedCommands(),
+                    });
+                }
+            } else if ("stats".equalsIgnoreCase(args[0])) {
+                if (plugin.checkPerm(sender, "specialitems.command.stats")) {
+                    ExecutionMetrics metrics = plugin.getMetrics();
+                    if (args.length > 1 && ("on".equalsIgnoreCase(args[1]) || "off".equalsIgnoreCase(args[1]))) {
+                        metrics.setEnabled("on".equalsIgnoreCase(args[1]));
+                        sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Metrics are now " + (metrics.isEnabled() ? "enabled" : "disabled") + "!");
+                    } else if (args.length > 1 && "reset".equalsIgnoreCase(args[1])) {
+                        metrics.reset();
+                        sender.sendMessage(plugin.getTag() + ChatColor.YELLOW + " Metrics reset!");
+                    } else if (args.length > 1) {
+                        List<String> report = metrics.getReport(args[1]);
+                        if (report == null) {
+                            sender.sendMessage(plugin.getTag() + ChatColor.RED + " No item with the name "
+                                    + ChatColor.YELLOW + args[1] + ChatColor.RED + " found!");
+                        } else {
+                            sender.sendMessage(ChatColor.YELLOW + "Metrics of " + ChatColor.RESET + args[1] + ChatColor.YELLOW + ":");
+                            sender.sendMessage(report.toArray(new String[0]));
+                        }
+                    } else {
+                        sender.sendMessage(ChatColor.YELLOW + "Execution metrics:");
+                        sender.sendMessage(metrics.getReport().toArray(new String[0]));
+                        sender.sendMessage(ChatColor.GRAY + "Use /" + label + " stats [<item>|on|off|reset]");
+                    }
+                }
             } else if ("info".equals(args[0])) {
                 if (plugin.checkPerm(sender, "specialitems.command.info")) {
                     if (args.length > 1) {
@@ -190,7 +274,7 @@ public class SpecialItemCommand implements CommandExecutor {
                         if (item != null) {
                             sender.sendMessage( new String[]{
                                     ChatColor.YELLOW + "Info for " + ChatColor.RESET + args[1] + ChatColor.YELLOW + ":",
-                                    ChatColor.YELLOW + " Type: " + ChatColor.RESET + item.getItem().getType(),
+                                    ChatColor.YELLOW + " Type: " + ChatColor.RESET + item.getMaterial(),
                                     ChatColor.YELLOW + " Displayname: " + ChatColor.RESET + item.getName(),
                             });
                             if (item.getLore().size() > 0) {
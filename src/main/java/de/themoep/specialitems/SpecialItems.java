@@ -18,50 +18,247 @@ package de.themoep.specialitems;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-import de.themoep.specialitems.listeners.ActionTriggerListener;
+import de.themoep.specialitems.actions.TargetResolver;
 import de.themoep.specialitems.listeners.ItemCraftListener;
+import de.themoep.specialitems.listeners.TriggerListenerManager;
 import org.bukkit.ChatColor;
 import org.bukkit.NamespacedKey;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
 public class SpecialItems extends JavaPlugin {
     public static NamespacedKey KEY;
 
+    private volatile FileConfiguration config = null;
+    private volatile Settings settings;
     private ItemManager itemManager;
+    private boolean reloading = false;
     private ItemGui gui = null;
+    private ItemMigrator migrator = null;
+    private PermissionCache permissionCache = null;
+    private CommandQueue commandQueue = null;
+    private CooldownManager cooldownManager = null;
+    private ExecutionMetrics metrics = null;
+    private InventoryIndex inventoryIndex = null;
+    private ProjectileTracker projectileTracker = null;
+    private TriggerListenerManager triggerListeners = null;
+    private SudoExecutor sudoExecutor = null;
+    private ConfigWriter configWriter = null;
 
     public void onEnable() {
         KEY = new NamespacedKey(this, "item");
+        configWriter = new ConfigWriter(this);
+        itemManager = new ItemManager(this);
+        migrator = new ItemMigrator(this);
+        permissionCache = new PermissionCache(this);
+        commandQueue = new CommandQueue(this);
+        cooldownManager = new CooldownManager(this);
+        metrics = new ExecutionMetrics(this);
+        triggerListeners = new TriggerListenerManager(this);
+        sudoExecutor = new SudoExecutor(this);
         loadConfig();
+        inventoryIndex = new InventoryIndex(this);
+        projectileTracker = new ProjectileTracker(this);
         gui = new ItemGui(this);
         getCommand("specialitems").setExecutor(new SpecialItemCommand(this));
         getServer().getPluginManager().registerEvents(new ItemCraftListener(this), this);
-        getServer().getPluginManager().registerEvents(new ActionTriggerListener(this), this);
+    }
+
+    public void onDisable() {
+        if (configWriter != null) {
+            configWriter.flush();
+        }
+        if (commandQueue != null) {
+            commandQueue.destroy();
+        }
+        if (itemManager != null) {
+            itemManager.destroy();
+        }
+    }
+
+    @Override
+    public FileConfiguration getConfig() {
+        if (config == null) {
+            reloadConfig();
+        }
+        return config;
+    }
+
+    /**
+     * Save the config in the background. Multiple saves in a short time get combined into one write.
+     */
+    @Override
+    public void saveConfig() {
+        configWriter.save();
+    }
+
+    @Override
+    public void reloadConfig() {
+        // Don't lose changes that weren't written yet
+        configWriter.flush();
+        try {
+            config = readConfig();
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().log(Level.SEVERE, "Could not load config.yml!", e);
+            config = new YamlConfiguration();
+        }
+    }
+
+    /**
+     * Read the config file with the defaults from the jar. This can be called off the main thread.
+     * @return The config
+     * @throws IOException If the file could not be read
+     * @throws InvalidConfigurationException If the file is not valid YAML
+     */
+    private FileConfiguration readConfig() throws IOException, InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.load(new File(getDataFolder(), "config.yml"));
+        InputStream defaults = getResource("config.yml");
+        if (defaults != null) {
+            config.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8)));
+        }
+        return config;
     }
 
     protected void loadConfig() {
         saveDefaultConfig();
         reloadConfig();
-        itemManager = new ItemManager(this);
+        loadSettings();
+        itemManager.apply(itemManager.loadItems(getConfig(), settings));
+        permissionCache.setup(settings.getPermissionCacheTicks());
         if (gui != null) {
             gui.destroy();
         }
     }
 
+    /**
+     * Reload the config and parse the items off the main thread. Only registering the recipes
+     * and permissions and swapping the registry happens on the main thread afterwards.
+     * If anything fails the old config and items stay active.
+     * @param callback Called on the main thread with <tt>null</tt> on success or the error that occurred
+     * @return <tt>true</tt> if the reload was started; <tt>false</tt> if one is already running
+     */
+    protected boolean reloadAsync(Consumer<Exception> callback) {
+        if (reloading) {
+            return false;
+        }
+        reloading = true;
+        configWriter.flush();
+        saveDefaultConfig();
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            try {
+                FileConfiguration newConfig = readConfig();
+                Settings newSettings = new Settings(newConfig);
+                ItemManager.LoadedRegistry newRegistry = itemManager.loadItems(newConfig, newSettings);
+                getServer().getScheduler().runTask(this, () -> {
+                    reloading = false;
+                    config = newConfig;
+                    applySettings(newSettings);
+                    itemManager.apply(newRegistry);
+                    permissionCache.setup(newSettings.getPermissionCacheTicks());
+                    gui.destroy();
+                    callback.accept(null);
+                });
+            } catch (Exception e) {
+                getLogger().log(Level.SEVERE, "Error while reloading the config! The old config stays active.", e);
+                getServer().getScheduler().runTask(this, () -> {
+                    reloading = false;
+                    callback.accept(e);
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Parse the item files that changed off the main thread and apply the new registry if any did
+     * @param callback Called on the main thread with <tt>null</tt> on success or the error that occurred
+     * @return <tt>true</tt> if the reload was started; <tt>false</tt> if a reload is already running or item files are disabled
+     */
+    protected boolean reloadItemFiles(Consumer<Exception> callback) {
+        if (reloading || !settings.isItemFiles()) {
+            return false;
+        }
+        reloading = true;
+        Settings currentSettings = settings;
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            try {
+                ItemRegistry newRegistry = itemManager.loadChangedItems(currentSettings);
+                getServer().getScheduler().runTask(this, () -> {
+                    reloading = false;
+                    if (newRegistry != null) {
+                        itemManager.apply(newRegistry);
+                    }
+                    callback.accept(null);
+                });
+            } catch (Exception e) {
+                getLogger().log(Level.SEVERE, "Error while reloading the item files! The old items stay active.", e);
+                getServer().getScheduler().runTask(this, () -> {
+                    reloading = false;
+                    callback.accept(e);
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Build a new settings snapshot from the current config and apply it
+     */
+    protected void loadSettings() {
+        applySettings(new Settings(getConfig()));
+    }
+
+    private void applySettings(Settings settings) {
+        this.settings = settings;
+        migrator.setup(
+                settings.isMigrationEnabled(),
+                settings.isMigrationComplete(),
+                settings.getMigrationSlotsPerTick()
+        );
+        TargetResolver.setup(settings.getTargetRange(), settings.getTargetConeAngle());
+        commandQueue.setup(
+                settings.isCommandQueueEnabled(),
+                settings.getCommandQueueBudgetNanos(),
+                settings.getCommandQueueMaxPerSecond()
+        );
+        sudoExecutor.setup(settings.isSudoOp());
+        itemManager.getItemFiles().setup(settings.isItemFiles(), settings.isItemFilesWatch(), settings.isItemFilesCache());
+        metrics.setup(
+                settings.isMetricsEnabled(),
+                settings.getMetricsDumpInterval(),
+                settings.getMetricsDumpFile()
+        );
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
     public ItemManager getItemManager() {
         return itemManager;
     }
 
     public String getLang(String key, String... repl) {
-        String msg =  getConfig().getString("lang." + key);
+        String msg = settings.getLang(key);
         if(msg == null) {
             return getTag() + ChatColor.RED + ": Unknown language key " + ChatColor.GOLD + key;
         }
         for(int i = 0; i + 1 < repl.length; i += 2) {
             msg = msg.replace("%" + repl[i] + "%", repl[i + 1]);
         }
-        return ChatColor.translateAlternateColorCodes('&', msg);
+        return msg;
     }
 
     /**
@@ -86,4 +283,40 @@ public class SpecialItems extends JavaPlugin {
     public ItemGui getGui() {
         return gui;
     }
+
+    public PermissionCache getPermissionCache() {
+        return permissionCache;
+    }
+
+    public ItemMigrator getMigrator() {
+        return migrator;
+    }
+
+    public CommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    public CooldownManager getCooldownManager() {
+        return cooldownManager;
+    }
+
+    public ExecutionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public InventoryIndex getInventoryIndex() {
+        return inventoryIndex;
+    }
+
+    public ProjectileTracker getProjectileTracker() {
+        return projectileTracker;
+    }
+
+    public TriggerListenerManager getTriggerListeners() {
+        return triggerListeners;
+    }
+
+    public SudoExecutor getSudoExecutor() {
+        return sudoExecutor;
+    }
 }
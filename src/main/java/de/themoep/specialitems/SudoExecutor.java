@@ -0,0 +1,156 @@
+package de.themoep.specialitems;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.permissions.Permission;
+import org.bukkit.permissions.PermissionAttachment;
+import org.bukkit.permissions.PermissionDefault;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Runs commands of sudo actions with elevated permissions without making the player an operator.
+ * Every command label gets one permission whose children are all the permissions that the command
+ * needs. Granting it only changes a permission attachment that every player keeps while they are
+ * online, so no op list gets written and only one permission recalculation happens per grant and revoke.
+ * The permission is revoked directly after the command ran so that no other command can use it.
+ */
+public class SudoExecutor implements Listener {
+    private final SpecialItems plugin;
+    private final Map<String, Permission> commandPermissions = new HashMap<>();
+    private final Map<UUID, PermissionAttachment> attachments = new HashMap<>();
+    private boolean op = false;
+
+    public SudoExecutor(SpecialItems plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Apply the sudo settings from the config
+     * @param op Whether or not to make players an operator instead of granting them the command's permissions
+     */
+    public void setup(boolean op) {
+        this.op = op;
+        commandPermissions.clear();
+        // The permissions of the command labels might change
+        for (PermissionAttachment attachment : attachments.values()) {
+            attachment.remove();
+        }
+        attachments.clear();
+    }
+
+    /**
+     * Run a command as a player with elevated permissions
+     * @param player    The player to run the command as
+     * @param command   The command without a leading slash
+     */
+    public void execute(Player player, String command) {
+        if (op) {
+            executeAsOp(player, command);
+            return;
+        }
+        Permission permission = getPermission(command);
+        if (player.hasPermission(permission)) {
+            player.performCommand(command);
+            return;
+        }
+        PermissionAttachment attachment = attachments.get(player.getUniqueId());
+        if (attachment == null) {
+            attachment = player.addAttachment(plugin);
+            attachments.put(player.getUniqueId(), attachment);
+        }
+        attachment.setPermission(permission, true);
+        try {
+            player.performCommand(command);
+        } finally {
+            attachment.unsetPermission(permission);
+        }
+    }
+
+    /**
+     * Run a sudo command by making the player an operator while the command runs like it always worked.
+     * This writes the op list twice and leaves the player as op if the server crashes in between.
+     */
+    private void executeAsOp(Player player, String command) {
+        PermissionAttachment permAtt = player.addAttachment(plugin, "*", true);
+        boolean isOp = player.isOp();
+        if (!isOp) {
+            player.setOp(true);
+        }
+        try {
+            player.performCommand(command);
+        } finally {
+            if (!isOp) {
+                player.setOp(false);
+            }
+            permAtt.remove();
+        }
+    }
+
+    /**
+     * Get the permission that grants everything a command needs
+     * @param command The command
+     * @return The permission, it is created and registered the first time a label is used
+     */
+    private Permission getPermission(String command) {
+        int space = command.indexOf(' ');
+        String label = (space > 0 ? command.substring(0, space) : command).toLowerCase(Locale.ROOT);
+        Permission permission = commandPermissions.get(label);
+        if (permission == null) {
+            String name = label.substring(label.indexOf(':') + 1);
+            Map<String, Boolean> children = new LinkedHashMap<>();
+            children.put("*", true);
+            children.put("minecraft.command." + name, true);
+            PluginCommand pluginCommand = plugin.getServer().getPluginCommand(label);
+            if (pluginCommand != null && pluginCommand.getPermission() != null) {
+                for (String node : pluginCommand.getPermission().split(";")) {
+                    children.put(node, true);
+                }
+            }
+            permission = plugin.getServer().getPluginManager().getPermission("specialitems.sudo." + label);
+            if (permission == null) {
+                permission = new Permission("specialitems.sudo." + label, "Granted while an item runs /" + label, PermissionDefault.FALSE, children);
+                plugin.getServer().getPluginManager().addPermission(permission);
+            } else if (!permission.getChildren().equals(children)) {
+                // Registered before a reload, the permissions of the command might have changed since then
+                permission.getChildren().clear();
+                permission.getChildren().putAll(children);
+                permission.recalculatePermissibles();
+            }
+            commandPermissions.put(label, permission);
+        }
+        return permission;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        attachments.remove(event.getPlayer().getUniqueId());
+    }
+}
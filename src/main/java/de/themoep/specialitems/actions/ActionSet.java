@@ -18,18 +18,27 @@ package de.themoep.specialitems.actions;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import de.themoep.specialitems.ExecutionMetrics;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.event.Cancellable;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class ActionSet {
+    private static final ItemAction[] NO_ACTIONS = new ItemAction[0];
+    private static final TriggerType[] TRIGGER_TYPES = TriggerType.values();
 
-    private Map<TriggerType, List<ItemAction>> actionMap = new HashMap<>();
+    private Map<TriggerType, List<ItemAction>> actionMap = new EnumMap<>(TriggerType.class);
+
+    private final ItemAction[][] resolvedActions = new ItemAction[TRIGGER_TYPES.length][];
+    @SuppressWarnings("unchecked")
+    private final List<ItemAction>[] resolvedLists = new List[TRIGGER_TYPES.length];
+    private final boolean[] cancels = new boolean[TRIGGER_TYPES.length];
 
     public ActionSet(ConfigurationSection actionSection) throws IllegalArgumentException {
         for (String key : actionSection.getKeys(false)) {
@@ -39,8 +48,9 @@ public class ActionSet {
             for (String actionString : actionSection.getStringList(key)) {
                 actionList.add(ItemAction.fromString(actionString));
             }
-            actionMap.put(triggerType, actionList);
+            actionMap.put(triggerType, Collections.unmodifiableList(actionList));
         }
+        resolve();
     }
 
     public ActionSet(String string) {
@@ -55,24 +65,47 @@ public class ActionSet {
             for (String actionString : actionEntryParts[1].split(",")) {
                 actionList.add(ItemAction.fromString(actionString));
             }
-            actionMap.put(triggerType, actionList);
+            actionMap.put(triggerType, Collections.unmodifiableList(actionList));
+        }
+        resolve();
+    }
+
+    /**
+     * Resolve the actions of every trigger type including the ones inherited from parents.
+     * Parent types are always declared before their children so they are already resolved.
+     */
+    private void resolve() {
+        for (TriggerType type : TRIGGER_TYPES) {
+            List<ItemAction> actions = actionMap.get(type);
+            ItemAction[] resolved = actions != null ? actions.toArray(NO_ACTIONS) : NO_ACTIONS;
+            List<ItemAction> resolvedList = actions != null ? actions : Collections.<ItemAction>emptyList();
+            for (int i = 0; i < type.getParents().length && resolved.length == 0; i++) {
+                resolved = resolvedActions[type.getParents()[i].ordinal()];
+                resolvedList = resolvedLists[type.getParents()[i].ordinal()];
+            }
+            resolvedActions[type.ordinal()] = resolved;
+            resolvedLists[type.ordinal()] = resolvedList;
+            // Every action cancels the event unless it is the DONT_CANCEL action
+            cancels[type.ordinal()] = resolved.length > 0 && resolved[resolved.length - 1].getType() != ItemActionType.DONT_CANCEL;
         }
     }
 
     /**
      * Get all the actions a specific trigger will run as a list
      * @param trigger The TriggerType
-     * @return A list of ItemActions, empty if none configured
+     * @return An unmodifiable list of ItemActions, empty if none configured
      */
     public List<ItemAction> getActions(TriggerType trigger) {
-        List<ItemAction> actions = actionMap.get(trigger);
-        actions = actions != null ? actions : new ArrayList<ItemAction>();
-        if (actions.size() == 0) {
-            for (int i = 0; i < trigger.getParents().length && actions.size() == 0; i++) {
-                actions = getActions(trigger.getParents()[i]);
-            }
-        }
-        return actions;
+        return resolvedLists[trigger.ordinal()];
+    }
+
+    /**
+     * Check whether or not a specific trigger will run any actions
+     * @param trigger The TriggerType
+     * @return <tt>true</tt> if there are actions for this trigger or one of its parents
+     */
+    public boolean hasActions(TriggerType trigger) {
+        return resolvedActions[trigger.ordinal()].length > 0;
     }
 
     /**
@@ -99,8 +132,24 @@ public class ActionSet {
      * @return Whether or not the event that triggered this should be cancelled, default is <tt>true</tt>
      */
     public Trigger execute(Trigger trigger) {
-        for (ItemAction action : getActions(trigger.getType())) {
-            action.execute(trigger);
+        return execute(trigger, null);
+    }
+
+    /**
+     * Execute all actions for a specific trigger on/with a player and record how long each action took
+     * @param trigger The trigger
+     * @param metrics The metrics to record the action times in, <tt>null</tt> to not record them
+     * @return Whether or not the event that triggered this should be cancelled, default is <tt>true</tt>
+     */
+    public Trigger execute(Trigger trigger, ExecutionMetrics metrics) {
+        for (ItemAction action : resolvedActions[trigger.getType().ordinal()]) {
+            if (metrics != null) {
+                long start = System.nanoTime();
+                action.execute(trigger);
+                metrics.recordAction(action.getType(), System.nanoTime() - start);
+            } else {
+                action.execute(trigger);
+            }
         }
         if (trigger.shouldCancel() && trigger.getEvent() instanceof Cancellable) {
             ((Cancellable) trigger.getEvent()).setCancelled(true);
@@ -108,6 +157,20 @@ public class ActionSet {
         return trigger;
     }
 
+    /**
+     * Handle a trigger whose actions are not run, e.g. because the item is on cooldown.
+     * The event gets cancelled if running the actions would have cancelled it too.
+     * @param trigger The trigger
+     * @return The trigger
+     */
+    public Trigger skip(Trigger trigger) {
+        trigger.setCancel(cancels[trigger.getType().ordinal()]);
+        if (trigger.shouldCancel() && trigger.getEvent() instanceof Cancellable) {
+            ((Cancellable) trigger.getEvent()).setCancelled(true);
+        }
+        return trigger;
+    }
+
     public int size() {
         return actionMap.size();
     }
@@ -0,0 +1,281 @@
+package de.themoep.specialitems.actions;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.ChatColor;
+import org.bukkit.Registry;
+import org.bukkit.Sound;
+import org.bukkit.SoundCategory;
+import org.bukkit.entity.Projectile;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * The parsed and validated parameters of an {@link ItemAction}.
+ * Specs are immutable and get compiled once when the config is loaded. Every part of the value
+ * that contains no variables is parsed and checked then, only the parts with variables in them
+ * need to be rendered and parsed per trigger.
+ */
+abstract class ActionSpec {
+
+    /**
+     * Spec for actions that don't take any parameters
+     */
+    static final ActionSpec NONE = new ActionSpec() {};
+
+    /**
+     * A parameter of a spec
+     * @param <T> The type of the parameter
+     */
+    interface Param<T> {
+        /**
+         * Get the value of this parameter for a trigger
+         * @param trigger The trigger to render variables for, can be <tt>null</tt> for constant parameters
+         * @return The value
+         * @throws IllegalArgumentException If the rendered part is not valid
+         */
+        T get(Trigger trigger) throws IllegalArgumentException;
+    }
+
+    /**
+     * Compile the value of an action into its typed spec
+     * @param type  The type of the action
+     * @param value The value string of the action with %variable% placeholders
+     * @return The compiled spec
+     * @throws IllegalArgumentException If a part without variables is not valid for that action type
+     */
+    static ActionSpec compile(ItemActionType type, String value) throws IllegalArgumentException {
+        String[] split = value.isEmpty() ? new String[0] : value.split(" ");
+        ValueTemplate[] parts = new ValueTemplate[split.length];
+        for (int i = 0; i < split.length; i++) {
+            parts[i] = ValueTemplate.compile(split[i]);
+        }
+        switch (type) {
+            case CLEAR_EFFECTS:
+                return new Targeted(parts.length > 0 ? parts[0] : null);
+            case PLAY_SOUND:
+                return new PlaySound(type, value, parts);
+            case STOP_SOUND:
+                return new StopSound(type, value, parts);
+            case EFFECT:
+                return new Effect(type, value, parts);
+            case LAUNCH_PROJECTILE:
+                return new LaunchProjectile(type, value, parts);
+            case RUN_COMMAND:
+            case SUDO_COMMAND:
+            case CONSOLE_COMMAND:
+                return new Text(param(ValueTemplate.compile(value), Function.identity()));
+            case MESSAGE:
+                return new Text(param(ValueTemplate.compile(value), text -> ChatColor.translateAlternateColorCodes('&', text)));
+            default:
+                return NONE;
+        }
+    }
+
+    /**
+     * Create a parameter from a part of the value. Constant parts are parsed directly.
+     * @param part   The part of the value
+     * @param parser The parser that turns the rendered part into the parameter's value
+     * @return The parameter
+     * @throws IllegalArgumentException If the part is constant and not valid
+     */
+    private static <T> Param<T> param(ValueTemplate part, Function<String, T> parser) throws IllegalArgumentException {
+        if (part.isConstant()) {
+            return constant(parser.apply(part.getValue()));
+        }
+        return trigger -> parser.apply(part.render(trigger));
+    }
+
+    private static <T> Param<T> constant(T value) {
+        return trigger -> value;
+    }
+
+    private static boolean isConstant(ValueTemplate[] parts, int from) {
+        for (int i = from; i < parts.length; i++) {
+            if (!parts[i].isConstant()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IllegalArgumentException error(ItemActionType type, String value, String message) {
+        return new IllegalArgumentException("Error while loading action with type " + type + "! " + message + " (Value: " + value + ")");
+    }
+
+    private static void checkLength(ItemActionType type, String value, ValueTemplate[] parts, int length) {
+        if (parts.length < length) {
+            throw error(type, value, "Not enough value parts! " + parts.length + ", needs at least " + length);
+        }
+    }
+
+    private static float parseFloat(ItemActionType type, String value, String part) {
+        try {
+            return Float.parseFloat(part);
+        } catch (NumberFormatException e) {
+            throw error(type, value, "The string " + part + " is not a valid float!");
+        }
+    }
+
+    private static double parseDouble(ItemActionType type, String value, String part) {
+        try {
+            return Double.parseDouble(part);
+        } catch (NumberFormatException e) {
+            throw error(type, value, "The string " + part + " is not a valid double!");
+        }
+    }
+
+    private static int parseInt(ItemActionType type, String value, String part, String name) {
+        try {
+            return Integer.parseInt(part);
+        } catch (NumberFormatException e) {
+            throw error(type, value, part + " is not a valid " + name + " integer!");
+        }
+    }
+
+    private static SoundCategory parseCategory(ItemActionType type, String value, String part) {
+        try {
+            return SoundCategory.valueOf(part.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw error(type, value, "The string " + part + " is not a valid sound category!");
+        }
+    }
+
+    /**
+     * Resolve a sound name to its namespaced key string, unknown sounds are passed through to support resource packs
+     */
+    private static String resolveSound(String name) {
+        Sound sound = Registry.SOUNDS.match(name);
+        if (sound != null) {
+            return sound.getKey().toString();
+        }
+        try {
+            return Sound.valueOf(name.toUpperCase(Locale.ROOT)).getKey().toString();
+        } catch (IllegalArgumentException ignored) {}
+        return name;
+    }
+
+    /**
+     * Spec with an optional target selector, <tt>null</tt> targets the triggering player
+     */
+    static class Targeted extends ActionSpec {
+        final Param<String> targets;
+
+        Targeted(ValueTemplate targets) {
+            this.targets = targets != null ? param(targets, Function.identity()) : constant(null);
+        }
+    }
+
+    static final class PlaySound extends Targeted {
+        final Param<String> sound;
+        final Param<SoundCategory> category;
+        final Param<Float> volume;
+        final Param<Float> pitch;
+        final boolean hasLocation;
+        final Param<Double> x;
+        final Param<Double> y;
+        final Param<Double> z;
+
+        private PlaySound(ItemActionType type, String value, ValueTemplate[] parts) {
+            super(parts.length > 2 ? parts[2] : null);
+            checkLength(type, value, parts, 1);
+            sound = param(parts[0], ActionSpec::resolveSound);
+            category = parts.length > 1 ? param(parts[1], part -> parseCategory(type, value, part)) : constant(SoundCategory.MASTER);
+            volume = parts.length > 3 ? param(parts[3], part -> parseFloat(type, value, part)) : constant(1f);
+            pitch = parts.length > 4 ? param(parts[4], part -> parseFloat(type, value, part)) : constant(1f);
+            hasLocation = parts.length > 7;
+            x = hasLocation ? param(parts[5], part -> parseDouble(type, value, part)) : constant(0d);
+            y = hasLocation ? param(parts[6], part -> parseDouble(type, value, part)) : constant(0d);
+            z = hasLocation ? param(parts[7], part -> parseDouble(type, value, part)) : constant(0d);
+        }
+    }
+
+    static final class StopSound extends Targeted {
+        final Param<String> sound;
+
+        private StopSound(ItemActionType type, String value, ValueTemplate[] parts) {
+            super(parts.length > 1 ? parts[1] : null);
+            checkLength(type, value, parts, 1);
+            sound = param(parts[0], part -> {
+                try {
+                    return Sound.valueOf(part.toUpperCase(Locale.ROOT)).getKey().toString();
+                } catch (IllegalArgumentException ignored) {}
+                return part;
+            });
+        }
+    }
+
+    static final class Effect extends Targeted {
+        final Param<PotionEffect> effect;
+
+        private Effect(ItemActionType type, String value, ValueTemplate[] parts) {
+            // A part with variables is never an effect name so it has to be the target
+            super(parts.length > 1 && (!parts[0].isConstant() || Registry.EFFECT.match(parts[0].getValue()) == null) ? parts[0] : null);
+            checkLength(type, value, parts, 2);
+            int i = parts[0].isConstant() && Registry.EFFECT.match(parts[0].getValue()) != null ? 0 : 1;
+            Param<PotionEffectType> potionType = param(parts[i], part -> {
+                PotionEffectType potionEffectType = Registry.EFFECT.match(part);
+                if (potionEffectType == null) {
+                    throw error(type, value, "Neither " + parts[0].getValue() + " nor " + parts[1].getValue() + " are potion effects!");
+                }
+                return potionEffectType;
+            });
+            Param<Integer> duration = parts.length > i + 1 ? param(parts[i + 1], part -> parseInt(type, value, part, "duration")) : constant(30);
+            Param<Integer> amplifier = parts.length > i + 2 ? param(parts[i + 2], part -> parseInt(type, value, part, "amplifier")) : constant(0);
+            Param<Boolean> ambient = parts.length > i + 3 ? param(parts[i + 3], Boolean::parseBoolean) : constant(false);
+            Param<Boolean> particles = parts.length > i + 4 ? param(parts[i + 4], Boolean::parseBoolean) : constant(true);
+            Param<PotionEffect> effect = trigger -> new PotionEffect(
+                    potionType.get(trigger),
+                    duration.get(trigger) * 20,
+                    amplifier.get(trigger),
+                    ambient.get(trigger),
+                    particles.get(trigger)
+            );
+            this.effect = isConstant(parts, i) ? constant(effect.get(null)) : effect;
+        }
+    }
+
+    static final class LaunchProjectile extends ActionSpec {
+        final Param<Class<? extends Projectile>> projectile;
+        final Param<Double> speed;
+
+        private LaunchProjectile(ItemActionType type, String value, ValueTemplate[] parts) {
+            checkLength(type, value, parts, 1);
+            projectile = param(parts[0], part -> {
+                try {
+                    return Class.forName("org.bukkit.entity." + part).asSubclass(Projectile.class);
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw error(type, value, "The string " + part + " is not a valid projectile class name!");
+                }
+            });
+            speed = parts.length > 1 ? param(parts[1], part -> parseDouble(type, value, part)) : constant(1d);
+        }
+    }
+
+    static final class Text extends ActionSpec {
+        final Param<String> text;
+
+        private Text(Param<String> text) {
+            this.text = text;
+        }
+    }
+}
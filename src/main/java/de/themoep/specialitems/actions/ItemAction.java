@@ -22,31 +22,22 @@ import de.themoep.specialitems.SpecialItems;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.Material;
-import org.bukkit.Registry;
-import org.bukkit.Sound;
 import org.bukkit.SoundCategory;
-import org.bukkit.block.Block;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.event.inventory.InventoryType;
-import org.bukkit.permissions.PermissionAttachment;
 import org.bukkit.potion.PotionEffect;
-import org.bukkit.potion.PotionEffectType;
-import org.bukkit.util.Vector;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
-import java.util.Set;
 
 public class ItemAction {
     private final ItemActionType type;
     private final String value;
+    private final ValueTemplate template;
+    private final ActionSpec spec;
 
     public ItemAction(ItemActionType type) throws IllegalArgumentException {
         this(type, "");
@@ -64,62 +55,8 @@ public class ItemAction {
         if (getType().requiresValue() && !hasValue()) {
             throw new IllegalArgumentException("ActionType " + getType() + " requires an additional value! (Add it with a space after the type in the config)");
         }
-        String[] values = getValue().split(" ");
-        if (getType() == ItemActionType.LAUNCH_PROJECTILE) {
-            try {
-                Class clazz = Class.forName("org.bukkit.entity." + values[0]);
-                if (!Projectile.class.isAssignableFrom(clazz)) {
-                    throw new IllegalArgumentException("Error while loading action with type " + getType() + "! The string " + values[0] + " is not a valid projectile class name! (Value: " + getValue() + ")");
-                }
-            } catch (ClassNotFoundException e) {
-                throw new IllegalArgumentException("Error while loading action with type " + getType() + "! The string " + values[0] + " is not a valid projectile class name! (Value: " + getValue() + ")");
-            }
-            if (values.length > 1) {
-                try {
-                    Double.parseDouble(values[1]);
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Error while loading action with type " + getType() + "! The string " + values[1] + " is not a valid double! (Value: " + getValue() + ")");
-                }
-            }
-        } else if (getType() == ItemActionType.PLAY_SOUND) {
-            if (values.length < 1) {
-                throw new IllegalArgumentException("Error while loading action with type " + getType() + "! Not enough value parts! " + values.length + ", needs at least 1 (Value: " + getValue() + ")");
-            }
-            if (values.length > 1) {
-                SoundCategory.valueOf(values[1].toUpperCase(Locale.ROOT));
-            }
-        } else if (getType() == ItemActionType.STOP_SOUND) {
-            if (values.length < 1) {
-                throw new IllegalArgumentException("Error while loading action with type " + getType() + "! Not enough value parts! " + values.length + ", needs at least 1 (Value: " + getValue() + ")");
-            }
-        } else if (getType() == ItemActionType.EFFECT) {
-            int i = 0;
-            if (values.length < 2) {
-                throw new IllegalArgumentException("Error while loading action with type " + getType() + "! Not enough value parts! " + values.length + ", needs at least 2 (Value: " + getValue() + ")");
-            }
-            PotionEffectType potionType = Registry.EFFECT.match(values[i]);
-            if (potionType == null) {
-                i++;
-                potionType = Registry.EFFECT.match(values[i]);
-            }
-            if (potionType == null) {
-                throw new IllegalArgumentException("Error while loading action with type " + getType() + "! Neither " + values[0] + " nor " + values[1] + " are potion effects! (Value: " + getValue() + ")");
-            }
-            if (values.length > i + 1) {
-                try {
-                    Integer.parseInt(values[i + 1]);
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Error while loading action with type " + getType() + "!" + values[i + 1] + " is not a valid duration integer! (Value: " + getValue() + ")");
-                }
-            }
-            if (values.length > i + 2) {
-                try {
-                    Integer.parseInt(values[i + 2]);
-                } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Error while loading action with type " + getType() + "!" + values[i + 2] + " is not a valid amplifier integer! (Value: " + getValue() + ")");
-                }
-            }
-        }
+        template = ValueTemplate.compile(value);
+        spec = ActionSpec.compile(type, value);
     }
 
     /**
@@ -132,16 +69,14 @@ public class ItemAction {
         ItemAction action;
         String[] splitArgs = string.split(" ");
         ItemActionType actionType = ItemActionType.valueOf(splitArgs[0].toUpperCase());
-        if (actionType.requiresValue()) {
-            if (splitArgs.length > 1) {
-                StringBuilder value = new StringBuilder(splitArgs[1]);
-                for (int i = 2; i < splitArgs.length; i++) {
-                    value.append(" ").append(splitArgs[i]);
-                }
-                action = new ItemAction(actionType, value.toString());
-            } else {
-                throw new IllegalArgumentException("ActionType " + actionType + " requires an additional value! (Add it with a space after the type in the config)");
+        if (splitArgs.length > 1) {
+            StringBuilder value = new StringBuilder(splitArgs[1]);
+            for (int i = 2; i < splitArgs.length; i++) {
+                value.append(" ").append(splitArgs[i]);
             }
+            action = new ItemAction(actionType, value.toString());
+        } else if (actionType.requiresValue()) {
+            throw new IllegalArgumentException("ActionType " + actionType + " requires an additional value! (Add it with a space after the type in the config)");
         } else {
             action = new ItemAction(actionType);
         }
@@ -170,105 +105,7 @@ public class ItemAction {
      * @return The value with all variables replaced
      */
     public String getValue(Trigger trigger) {
-        String value = getValue();
-        if (value.indexOf('%') == -1) {
-            // No percentage sign for variables in value string found,
-            // just return the normal value without doing all the other stuff
-            return value;
-        }
-        Player player = trigger.getPlayer();
-        List<String> repl = new ArrayList<>(Arrays.asList(
-                "trigger", trigger.getType().toString(),
-                "player", player.getName(),
-                "world", player.getLocation().getWorld().getName(),
-                "x", String.valueOf(player.getLocation().getBlockX()),
-                "y", String.valueOf(player.getLocation().getBlockY()),
-                "z", String.valueOf(player.getLocation().getBlockZ()),
-                "x.exact", String.valueOf(player.getLocation().getX()),
-                "y.exact", String.valueOf(player.getLocation().getY()),
-                "z.exact", String.valueOf(player.getLocation().getZ()),
-                "eye.x", String.valueOf(player.getEyeLocation().getBlockX()),
-                "eye.y", String.valueOf(player.getEyeLocation().getBlockY()),
-                "eye.z", String.valueOf(player.getEyeLocation().getBlockZ()),
-                "eye.x.exact", String.valueOf(player.getEyeLocation().getX()),
-                "eye.y.exact", String.valueOf(player.getEyeLocation().getY()),
-                "eye.z.exact", String.valueOf(player.getEyeLocation().getZ()),
-                "pitch", String.valueOf(player.getEyeLocation().getPitch()),
-                "yaw", String.valueOf(player.getEyeLocation().getYaw())
-        ));
-        if (trigger instanceof TargetedTrigger) {
-            TargetedTrigger targetedTrigger = (TargetedTrigger) trigger;
-            Location targetLocation = targetedTrigger.getTarget().getLocation();
-            Location targetEyeLocation = targetedTrigger.getTarget().getEyeLocation();
-            repl.addAll(Arrays.asList(
-                    "target.name", targetedTrigger.getTarget().getName(),
-                    "target.world", targetedTrigger.getTarget().getLocation().getWorld().getName(),
-                    "target.x", String.valueOf(targetLocation.getBlockX()),
-                    "target.y", String.valueOf(targetLocation.getBlockY()),
-                    "target.z", String.valueOf(targetLocation.getBlockZ()),
-                    "target.x.exact", String.valueOf(targetLocation.getX()),
-                    "target.y.exact", String.valueOf(targetLocation.getY()),
-                    "target.z.exact", String.valueOf(targetLocation.getZ()),
-                    "target.eye.x", String.valueOf(targetEyeLocation.getBlockX()),
-                    "target.eye.y", String.valueOf(targetEyeLocation.getBlockY()),
-                    "target.eye.z", String.valueOf(targetEyeLocation.getBlockZ()),
-                    "target.eye.x.exact", String.valueOf(targetEyeLocation.getX()),
-                    "target.eye.y.exact", String.valueOf(targetEyeLocation.getY()),
-                    "target.eye.z.exact", String.valueOf(targetEyeLocation.getZ()),
-                    "target.pitch", String.valueOf(targetEyeLocation.getPitch()),
-                    "target.yaw", String.valueOf(targetEyeLocation.getYaw())
-            ));
-        } else if (value.contains("%target.")) {
-            Entity target = null;
-            Location targetLocation = null;
-            String targetName = "BLOCK";
-            int checkDistance = 64;
-            double nearest = checkDistance * checkDistance;
-            double directest = 0;
-            for (Entity e : player.getNearbyEntities(checkDistance, checkDistance, checkDistance)) {
-                Vector toEntity = e.getLocation().toVector().subtract(player.getEyeLocation().toVector());
-                double dot = toEntity.normalize().dot(player.getEyeLocation().getDirection());
-                if (dot > directest) {
-                    double distance = player.getLocation().distanceSquared(e.getLocation());
-                    if (distance <= nearest || dot - 0.1 > directest) {
-                        if (player.hasLineOfSight(e)) {
-                            nearest = distance;
-                            directest = dot;
-                            target = e;
-                        }
-                    }
-                }
-            }
-            if (target != null) {
-                targetLocation = target.getLocation();
-                targetName = target instanceof Player ? target.getName() : target.getType() + ":" + target.getName();
-            } else {
-                Block block = player.getTargetBlock((Set<Material>) null, checkDistance);
-                if (block != null && block.getType() != Material.AIR) {
-                    targetLocation = block.getLocation();
-                    targetName = "BLOCK:" + block.getType();
-                }
-            }
-
-            if (targetLocation != null) {
-                repl.addAll(Arrays.asList(
-                        "target.name", targetName,
-                        "target.world", targetLocation.getWorld().getName(),
-                        "target.x", String.valueOf(targetLocation.getBlockX()),
-                        "target.y", String.valueOf(targetLocation.getBlockY()),
-                        "target.z", String.valueOf(targetLocation.getBlockZ()),
-                        "target.x.exact", String.valueOf(targetLocation.getX()),
-                        "target.y.exact", String.valueOf(targetLocation.getY()),
-                        "target.z.exact", String.valueOf(targetLocation.getZ()),
-                        "target.pitch", String.valueOf(targetLocation.getPitch()),
-                        "target.yaw", String.valueOf(targetLocation.getYaw())
-                ));
-            }
-        }
-        for (int i = 0; i + 1 < repl.size(); i += 2) {
-            value = value.replace("%" + repl.get(i) + "%", repl.get(i+1));
-        }
-        return value;
+        return template.render(trigger);
     }
 
     public boolean hasValue() {
@@ -284,11 +121,16 @@ public class ItemAction {
         trigger.setExecuted(true);
         Player player = trigger.getPlayer();
         trigger.setCancel(true);
-        String[] values = new String[0];
-        if (hasValue()) {
-            values = getValue(trigger).split(" ");
+        try {
+            execute(trigger, player);
+        } catch (IllegalArgumentException e) {
+            // Only parts of the value with variables in them can be invalid at this point
+            player.sendMessage(ChatColor.RED + "The item's action is misconfigured! " + e.getMessage() + " Please contact an administrator!");
         }
-        List<Entity> targets = Collections.emptyList();
+        return trigger;
+    }
+
+    private void execute(Trigger trigger, Player player) throws IllegalArgumentException {
         switch (getType()) {
             case OPEN_CRAFTING:
                 player.closeInventory();
@@ -310,8 +152,7 @@ public class ItemAction {
                 player.closeInventory();
                 break;
             case CLEAR_EFFECTS:
-                targets = getTargets(trigger, values.length > 0 ? values[0] : null);
-                for (Entity target : targets) {
+                for (Entity target : getTargets(trigger, ((ActionSpec.Targeted) spec).targets.get(trigger))) {
                     if (target instanceof LivingEntity) {
                         for (PotionEffect effect : ((LivingEntity) target).getActivePotionEffects()) {
                             ((LivingEntity) target).removePotionEffect(effect.getType());
@@ -320,160 +161,68 @@ public class ItemAction {
                 }
                 break;
             case PLAY_SOUND:
-                if (values.length < 1) {
-                    trigger.getPlayer().sendMessage(ChatColor.RED + "The item's effect is misconfigured! (" + values.length + ", needs to be at least 1) Please contact an administrator!");
-                    break;
-                }
-                SoundCategory category = SoundCategory.MASTER;
-                if (values.length > 1) {
-                    category = SoundCategory.valueOf(values[1].toUpperCase(Locale.ROOT));
-                }
-                targets = getTargets(trigger, values.length > 2 ? values[2] : null);
-                float volume = 1;
-                if (values.length > 3) {
-                    volume = Float.parseFloat(values[3]);
-                }
-                float pitch = 1;
-                if (values.length > 4) {
-                    pitch = Float.parseFloat(values[4]);
-                }
-
+                ActionSpec.PlaySound playSound = (ActionSpec.PlaySound) spec;
+                String sound = playSound.sound.get(trigger);
+                SoundCategory category = playSound.category.get(trigger);
+                float volume = playSound.volume.get(trigger);
+                float pitch = playSound.pitch.get(trigger);
                 Location playLocation = null;
-                if (values.length > 7) {
-                    playLocation = new Location(trigger.getPlayer().getWorld(),
-                            Double.parseDouble(values[5]),
-                            Double.parseDouble(values[6]),
-                            Double.parseDouble(values[7])
-                    );
-                }
-
-                String playSound = values[0];
-                Sound sound = Registry.SOUNDS.match(values[0]);
-                if (sound != null) {
-                    playSound = sound.getKey().toString();
-                } else {
-                    try {
-                        playSound = Sound.valueOf(values[0].toUpperCase(Locale.ROOT)).getKey().toString();
-                    } catch (IllegalArgumentException ignored) {}
+                if (playSound.hasLocation) {
+                    playLocation = new Location(player.getWorld(), playSound.x.get(trigger), playSound.y.get(trigger), playSound.z.get(trigger));
                 }
-
+                List<Entity> targets = getTargets(trigger, playSound.targets.get(trigger));
                 if (targets.isEmpty()) {
-                    player.getWorld().playSound(playLocation != null ? playLocation : player.getLocation(), playSound, category, volume, pitch);
+                    player.getWorld().playSound(playLocation != null ? playLocation : trigger.getContext().getLocation(), sound, category, volume, pitch);
                 } else {
                     for (Entity target : targets) {
                         if (target instanceof Player) {
-                            ((Player) target).playSound(playLocation != null ? playLocation : target.getLocation(), playSound, category, volume, pitch);
+                            ((Player) target).playSound(playLocation != null ? playLocation : target.getLocation(), sound, category, volume, pitch);
                         }
                     }
                 }
                 break;
             case STOP_SOUND:
-                if (values.length < 1) {
-                    trigger.getPlayer().sendMessage(ChatColor.RED + "The item's effect is misconfigured! (" + values.length + ", needs to be at least 1) Please contact an administrator!");
-                    break;
-                }
-                String stopSound = values[0];
-                try {
-                    stopSound = Sound.valueOf(values[0].toUpperCase(Locale.ROOT)).getKey().toString();
-                } catch (IllegalArgumentException ignored) {}
-                targets = getTargets(trigger, values.length > 1 ? values[1] : null);
-                for (Entity target : targets) {
+                ActionSpec.StopSound stopSound = (ActionSpec.StopSound) spec;
+                String stoppedSound = stopSound.sound.get(trigger);
+                for (Entity target : getTargets(trigger, stopSound.targets.get(trigger))) {
                     if (target instanceof Player) {
-                        ((Player) target).stopSound(stopSound);
+                        ((Player) target).stopSound(stoppedSound);
                     }
                 }
                 break;
             case EFFECT:
-                int i = 0;
-                if (values.length < 2) {
-                    trigger.getPlayer().sendMessage(ChatColor.RED + "The item's effect is misconfigured! (" + values.length + ", needs to be at least 2) Please contact an administrator!");
-                    break;
-                }
-                PotionEffectType potionType = Registry.EFFECT.match(values[i]);
-                if (potionType == null) {
-                    targets = getTargets(trigger, values.length > 1 ? values[2] : null);
-                    i++;
-                    potionType = Registry.EFFECT.match(values[i]);
-                }
-                if (potionType == null) {
-                    trigger.getPlayer().sendMessage(ChatColor.RED + "The item's effect is misconfigured! Neiter " + values[0] + " nor " + values[1] + " are potion effects! Please contact an administrator!");
-                    break;
-                }
-                int duration = 30;
-                if (values.length > i + 1) {
-                    try {
-                        duration = Integer.parseInt(values[i + 1]);
-                    } catch (NumberFormatException e) {
-                        trigger.getPlayer().sendMessage(ChatColor.RED + "The item's effect is misconfigured! " + values[i + 1] + " is not a valid duration integer! Please contact an administrator!");
-                        break;
-                    }
-                }
-                int amplifier = 0;
-                if (values.length > i + 2) {
-                    try {
-                        amplifier = Integer.parseInt(values[i + 2]);
-                    } catch (NumberFormatException e) {
-                        trigger.getPlayer().sendMessage(ChatColor.RED + "The item's effect is misconfigured! " + values[i + 1] + " is not a valid amplifier integer! Please contact an administrator!");
-                        break;
-                    }
-                }
-                boolean ambient = false;
-                if (values.length > i + 3) {
-                    ambient = Boolean.parseBoolean(values[i + 3]);
-                }
-                boolean particles = true;
-                if (values.length > i + 4) {
-                    particles = Boolean.parseBoolean(values[i + 4]);
-                }
-                PotionEffect effect = new PotionEffect(potionType, duration * 20, amplifier, ambient, particles);
-                for (Entity target : targets) {
+                ActionSpec.Effect effect = (ActionSpec.Effect) spec;
+                PotionEffect potionEffect = effect.effect.get(trigger);
+                for (Entity target : getTargets(trigger, effect.targets.get(trigger))) {
                     if (target instanceof LivingEntity) {
-                        ((LivingEntity) target).addPotionEffect(effect);
+                        ((LivingEntity) target).addPotionEffect(potionEffect);
                     }
                 }
                 break;
             case LAUNCH_PROJECTILE:
-                try {
-                    Class projectile = Class.forName("org.bukkit.entity." + values[0]);
-                    Vector dir = player.getEyeLocation().getDirection();
-                    if (values.length > 1) {
-                        dir.multiply(Double.parseDouble(values[1]));
-                    }
-                    player.launchProjectile(projectile, dir);
-                } catch (ClassNotFoundException e) {
-                    player.sendMessage(ChatColor.RED + "Internal error while trying to launch projectile due to wrong projectile class name! Please contact an administrator!");
-                    e.printStackTrace();
+                ActionSpec.LaunchProjectile projectile = (ActionSpec.LaunchProjectile) spec;
+                Projectile launched = player.launchProjectile(projectile.projectile.get(trigger), trigger.getContext().getEyeLocation().getDirection().multiply(projectile.speed.get(trigger)));
+                if (trigger.hasSpecialItem()) {
+                    SpecialItems.getPlugin(SpecialItems.class).getProjectileTracker().track(launched, trigger.getSpecialItem(), player);
                 }
                 break;
             case RUN_COMMAND:
-                player.performCommand(getValue(trigger));
+                String command = ((ActionSpec.Text) spec).text.get(trigger);
+                runCommand(trigger, player, () -> player.performCommand(command));
                 break;
             case SUDO_COMMAND:
-                PermissionAttachment permAtt = player.addAttachment(
-                        SpecialItems.getProvidingPlugin(SpecialItems.class),
-                        "*", true
-                );
-                boolean isOp = player.isOp();
-                if (!isOp) {
-                    player.setOp(true);
-                }
-                try {
-                    player.performCommand(getValue(trigger));
-                } finally {
-                    if (!isOp) {
-                        player.setOp(false);
-                    }
-                    permAtt.remove();
-                }
+                String sudoCommand = ((ActionSpec.Text) spec).text.get(trigger);
+                runCommand(trigger, player, () -> SpecialItems.getPlugin(SpecialItems.class).getSudoExecutor().execute(player, sudoCommand));
                 break;
             case CONSOLE_COMMAND:
-                player.getServer().dispatchCommand(
+                String consoleCommand = ((ActionSpec.Text) spec).text.get(trigger);
+                runCommand(trigger, null, () -> player.getServer().dispatchCommand(
                         player.getServer().getConsoleSender(),
-                        getValue(trigger)
-                );
+                        consoleCommand
+                ));
                 break;
             case MESSAGE:
-                player.sendMessage(ChatColor.translateAlternateColorCodes('&', getValue(trigger)));
+                player.sendMessage(((ActionSpec.Text) spec).text.get(trigger));
                 break;
             case REMOVE_ITEM:
                 trigger.setRemoveItem(true);
@@ -483,7 +232,18 @@ public class ItemAction {
                 trigger.setCancel(false);
                 break;
         }
-        return trigger;
+    }
+
+    /**
+     * Run a command directly or queue it if the command queue is enabled
+     * @param trigger   The trigger that triggered this action
+     * @param player    The player that needs to be online when the command runs, <tt>null</tt> if it doesn't matter
+     * @param command   The command to run
+     */
+    private void runCommand(Trigger trigger, Player player, Runnable command) {
+        if (!SpecialItems.getPlugin(SpecialItems.class).getCommandQueue().submit(trigger.getSpecialItem(), player, command)) {
+            command.run();
+        }
     }
 
     private List<Entity> getTargets(Trigger trigger, String value) {
@@ -17,7 +17,7 @@ package de.themoep.specialitems.actions;
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-enum ItemActionType {
+public enum ItemActionType {
     OPEN_ENDERCHEST,
     OPEN_CRAFTING,
     OPEN_ENCHANTING,
@@ -0,0 +1,118 @@
+package de.themoep.specialitems.actions;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.FluidCollisionMode;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
+import org.bukkit.util.RayTraceResult;
+import org.bukkit.util.Vector;
+
+/**
+ * Resolves what a player is looking at for triggers that don't have a target themselves.
+ * Only entities inside a cone around the view direction are considered and the world is
+ * ray traced once to find the looked at block. Entities need to be in front of that block
+ * along the view direction, no further ray traces are done per entity.
+ */
+public class TargetResolver {
+    private static volatile Cone cone = new Cone(64, 20);
+
+    private TargetResolver() {}
+
+    /**
+     * Set the range and the size of the cone in which targets are searched
+     * @param range     The maximum distance of targets in blocks
+     * @param coneAngle The maximum angle between the view direction and a target in degrees
+     */
+    public static void setup(double range, double coneAngle) {
+        cone = new Cone(range, coneAngle);
+    }
+
+    /**
+     * Find the target of a player
+     * @param player The player to find the target for
+     * @return The entity closest to the view direction or the looked at block,
+     * <tt>null</tt> if there is neither in range
+     */
+    public static TargetedTrigger.TriggerTarget resolve(Player player) {
+        Cone cone = TargetResolver.cone;
+        if (cone.range <= 0) {
+            return null;
+        }
+        Location eye = player.getEyeLocation();
+        World world = eye.getWorld();
+        Vector direction = eye.getDirection();
+        Vector eyeVector = eye.toVector();
+
+        RayTraceResult blockHit = world.rayTraceBlocks(eye, direction, cone.range, FluidCollisionMode.NEVER, true);
+        double maxDistance = cone.range;
+        if (blockHit != null) {
+            maxDistance = blockHit.getHitPosition().clone().subtract(eyeVector).length();
+        }
+
+        BoundingBox box = BoundingBox.of(eyeVector, eyeVector.clone().add(direction.clone().multiply(maxDistance))).expand(maxDistance * cone.sine);
+        Entity target = null;
+        double bestCosine = cone.minCosine;
+        double bestDistance = maxDistance;
+        for (Entity entity : world.getNearbyEntities(box, e -> e != player)) {
+            Vector toEntity = entity.getBoundingBox().getCenter().subtract(eyeVector);
+            double distance = toEntity.length();
+            if (distance == 0 || distance > cone.range) {
+                continue;
+            }
+            double along = toEntity.dot(direction);
+            if (along > maxDistance) {
+                // Behind the plane of the block that the player is looking at
+                continue;
+            }
+            double cosine = along / distance;
+            if (cosine > bestCosine || cosine == bestCosine && distance < bestDistance) {
+                bestCosine = cosine;
+                bestDistance = distance;
+                target = entity;
+            }
+        }
+        if (target != null) {
+            return new TargetedTrigger.TriggerTarget(target);
+        }
+        if (blockHit != null && blockHit.getHitBlock() != null) {
+            return new TargetedTrigger.TriggerTarget(blockHit.getHitBlock());
+        }
+        return null;
+    }
+
+    /**
+     * The immutable search settings so that they can be replaced as a whole
+     */
+    private static class Cone {
+        private final double range;
+        private final double sine;
+        private final double minCosine;
+
+        private Cone(double range, double coneAngle) {
+            double angle = Math.toRadians(Math.max(0, Math.min(coneAngle, 90)));
+            this.range = Math.max(0, range);
+            this.sine = Math.sin(angle);
+            this.minCosine = Math.cos(angle);
+        }
+    }
+}
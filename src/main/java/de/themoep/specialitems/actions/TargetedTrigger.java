@@ -46,40 +46,55 @@ public class TargetedTrigger extends Trigger {
         this.target = new TriggerTarget(target);
     }
 
+    @Override
     public TriggerTarget getTarget() {
         return target;
     }
 
-    public class TriggerTarget {
-        private String name;
-        private Location location;
-        private Location eyeLocation;
+    /**
+     * A target of a trigger. Its name and locations are only read on first access.
+     */
+    public static class TriggerTarget {
+        private final Entity entity;
+        private final Block block;
+        private String name = null;
+        private Location location = null;
+        private Location eyeLocation = null;
 
         public TriggerTarget(Entity target) {
-            if (target.getType() == EntityType.PLAYER) {
-                name = target.getName();
-            } else {
-                name = target.getType() + ":" + target.getName();
-            }
-            location = target.getLocation();
-            eyeLocation = target instanceof LivingEntity ? ((LivingEntity) target).getEyeLocation() : location;
+            this.entity = target;
+            this.block = null;
         }
 
         public TriggerTarget(Block target) {
-            name = "BLOCK:" + target.getType().toString();
-            location = target.getLocation();
-            eyeLocation = location;
+            this.entity = null;
+            this.block = target;
         }
 
         public String getName() {
+            if (name == null) {
+                if (entity == null) {
+                    name = "BLOCK:" + block.getType().toString();
+                } else if (entity.getType() == EntityType.PLAYER) {
+                    name = entity.getName();
+                } else {
+                    name = entity.getType() + ":" + entity.getName();
+                }
+            }
             return name;
         }
 
         public Location getLocation() {
+            if (location == null) {
+                location = entity != null ? entity.getLocation() : block.getLocation();
+            }
             return location;
         }
 
         public Location getEyeLocation() {
+            if (eyeLocation == null) {
+                eyeLocation = entity instanceof LivingEntity ? ((LivingEntity) entity).getEyeLocation() : getLocation();
+            }
             return eyeLocation;
         }
     }
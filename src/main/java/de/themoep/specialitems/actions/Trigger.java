@@ -34,6 +34,9 @@ public class Trigger {
     private boolean removeItem = false;
 
     private SpecialItem specialItem = null;
+    private TargetedTrigger.TriggerTarget target = null;
+    private boolean targetResolved = false;
+    private TriggerContext context = null;
 
     /**
      * This object stores information about the trigger that will trigger actions
@@ -98,6 +101,29 @@ public class Trigger {
         return specialItem != null;
     }
 
+    /**
+     * Get the context that caches values which all actions of this trigger share
+     */
+    public TriggerContext getContext() {
+        if (context == null) {
+            context = new TriggerContext(this);
+        }
+        return context;
+    }
+
+    /**
+     * Get what the player is looking at. This is only resolved once per trigger
+     * so that all actions of it share the same target.
+     * @return The target or <tt>null</tt> if there is none in range
+     */
+    public TargetedTrigger.TriggerTarget getTarget() {
+        if (!targetResolved) {
+            targetResolved = true;
+            target = TargetResolver.resolve(player);
+        }
+        return target;
+    }
+
     public boolean wasExecuted() {
         return executed;
     }
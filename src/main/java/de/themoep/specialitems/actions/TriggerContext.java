@@ -0,0 +1,75 @@
+package de.themoep.specialitems.actions;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+/**
+ * Values that all actions of one trigger share. They are only computed on first access
+ * and the context is thrown away together with its trigger.
+ * The returned locations are shared and must not be modified!
+ */
+public class TriggerContext {
+    private final Trigger trigger;
+    private Location location = null;
+    private Location eyeLocation = null;
+
+    TriggerContext(Trigger trigger) {
+        this.trigger = trigger;
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    public Player getPlayer() {
+        return trigger.getPlayer();
+    }
+
+    public Location getLocation() {
+        if (location == null) {
+            location = getPlayer().getLocation();
+        }
+        return location;
+    }
+
+    public Location getEyeLocation() {
+        if (eyeLocation == null) {
+            eyeLocation = getPlayer().getEyeLocation();
+        }
+        return eyeLocation;
+    }
+
+    /**
+     * Get the target of the trigger
+     * @return The target or <tt>null</tt> if there is none
+     */
+    public TargetedTrigger.TriggerTarget getTarget() {
+        return trigger.getTarget();
+    }
+
+    public Location getTargetLocation() {
+        return getTarget() != null ? getTarget().getLocation() : null;
+    }
+
+    public Location getTargetEyeLocation() {
+        return getTarget() != null ? getTarget().getEyeLocation() : null;
+    }
+}
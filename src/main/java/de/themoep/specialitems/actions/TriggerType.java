@@ -76,6 +76,21 @@ public enum TriggerType {
     UNSUPPORTED,;
 
     private final TriggerType[] parents;
+    private long[] ancestors;
+
+    static {
+        // Precompute a bit matrix of all ancestors, parents are always declared before their children
+        TriggerType[] types = values();
+        for (TriggerType type : types) {
+            type.ancestors = new long[(types.length + 63) / 64];
+            for (TriggerType parent : type.parents) {
+                type.ancestors[parent.ordinal() >>> 6] |= 1L << parent.ordinal();
+                for (int i = 0; i < type.ancestors.length; i++) {
+                    type.ancestors[i] |= parent.ancestors[i];
+                }
+            }
+        }
+    }
 
     TriggerType(TriggerType... parents) {
         this.parents = parents;
@@ -86,11 +101,6 @@ public enum TriggerType {
     }
 
     public boolean isChildOf(TriggerType parent) {
-        for (TriggerType type : parents) {
-            if (type == parent || type.isChildOf(parent)) {
-                return true;
-            }
-        }
-        return false;
+        return (ancestors[parent.ordinal() >>> 6] & (1L << parent.ordinal())) != 0;
     }
 }
@@ -0,0 +1,307 @@
+package de.themoep.specialitems.actions;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A value string compiled into literal segments and variable slots.
+ * Rendering only computes the variables that are actually referenced.
+ */
+final class ValueTemplate {
+    private static final Map<String, Variable> VARIABLES = new HashMap<>();
+
+    static {
+        for (Variable variable : Variable.values()) {
+            VARIABLES.put(variable.getName(), variable);
+        }
+    }
+
+    private final String value;
+    private final String[] literals;
+    private final Variable[] variables;
+    private final int literalLength;
+
+    private ValueTemplate(String value, String[] literals, Variable[] variables) {
+        this.value = value;
+        this.literals = literals;
+        this.variables = variables;
+        int literalLength = 0;
+        for (String literal : literals) {
+            literalLength += literal.length();
+        }
+        this.literalLength = literalLength;
+    }
+
+    /**
+     * Compile a value string into a template
+     * @param value The value with %variable% placeholders
+     * @return The compiled template
+     */
+    static ValueTemplate compile(String value) {
+        List<String> literals = new ArrayList<>();
+        List<Variable> variables = new ArrayList<>();
+        int literalStart = 0;
+        int start = value.indexOf('%');
+        while (start != -1) {
+            int end = value.indexOf('%', start + 1);
+            if (end == -1) {
+                break;
+            }
+            Variable variable = VARIABLES.get(value.substring(start + 1, end));
+            if (variable != null) {
+                literals.add(value.substring(literalStart, start));
+                variables.add(variable);
+                literalStart = end + 1;
+                start = value.indexOf('%', literalStart);
+            } else {
+                // Not a known variable, the closing sign might start the next one
+                start = end;
+            }
+        }
+        literals.add(value.substring(literalStart));
+        return new ValueTemplate(value, literals.toArray(new String[0]), variables.toArray(new Variable[0]));
+    }
+
+    /**
+     * Get the value this template was compiled from
+     */
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * Whether or not this template contains no variables and always renders to the same value
+     */
+    boolean isConstant() {
+        return variables.length == 0;
+    }
+
+    /**
+     * Render this template for a specific trigger
+     * @param trigger The trigger to get the variable values from
+     * @return The value with all resolvable variables replaced
+     */
+    String render(Trigger trigger) {
+        if (isConstant()) {
+            return value;
+        }
+        TriggerContext context = trigger.getContext();
+        StringBuilder sb = new StringBuilder(literalLength + variables.length * 16);
+        for (int i = 0; i < variables.length; i++) {
+            sb.append(literals[i]);
+            String replacement = variables[i].resolve(context);
+            if (replacement != null) {
+                sb.append(replacement);
+            } else {
+                // Keep unresolvable variables as they are
+                sb.append('%').append(variables[i].getName()).append('%');
+            }
+        }
+        return sb.append(literals[variables.length]).toString();
+    }
+
+    private enum Variable {
+        TRIGGER("trigger") {
+            String resolve(TriggerContext s) {
+                return s.getTrigger().getType().toString();
+            }
+        },
+        PLAYER("player") {
+            String resolve(TriggerContext s) {
+                return s.getPlayer().getName();
+            }
+        },
+        WORLD("world") {
+            String resolve(TriggerContext s) {
+                return s.getLocation().getWorld().getName();
+            }
+        },
+        X("x") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getLocation().getBlockX());
+            }
+        },
+        Y("y") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getLocation().getBlockY());
+            }
+        },
+        Z("z") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getLocation().getBlockZ());
+            }
+        },
+        X_EXACT("x.exact") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getLocation().getX());
+            }
+        },
+        Y_EXACT("y.exact") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getLocation().getY());
+            }
+        },
+        Z_EXACT("z.exact") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getLocation().getZ());
+            }
+        },
+        EYE_X("eye.x") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getBlockX());
+            }
+        },
+        EYE_Y("eye.y") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getBlockY());
+            }
+        },
+        EYE_Z("eye.z") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getBlockZ());
+            }
+        },
+        EYE_X_EXACT("eye.x.exact") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getX());
+            }
+        },
+        EYE_Y_EXACT("eye.y.exact") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getY());
+            }
+        },
+        EYE_Z_EXACT("eye.z.exact") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getZ());
+            }
+        },
+        PITCH("pitch") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getPitch());
+            }
+        },
+        YAW("yaw") {
+            String resolve(TriggerContext s) {
+                return String.valueOf(s.getEyeLocation().getYaw());
+            }
+        },
+        TARGET_NAME("target.name") {
+            String resolve(TriggerContext s) {
+                return s.getTarget() != null ? s.getTarget().getName() : null;
+            }
+        },
+        TARGET_WORLD("target.world") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? s.getTargetLocation().getWorld().getName() : null;
+            }
+        },
+        TARGET_X("target.x") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? String.valueOf(s.getTargetLocation().getBlockX()) : null;
+            }
+        },
+        TARGET_Y("target.y") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? String.valueOf(s.getTargetLocation().getBlockY()) : null;
+            }
+        },
+        TARGET_Z("target.z") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? String.valueOf(s.getTargetLocation().getBlockZ()) : null;
+            }
+        },
+        TARGET_X_EXACT("target.x.exact") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? String.valueOf(s.getTargetLocation().getX()) : null;
+            }
+        },
+        TARGET_Y_EXACT("target.y.exact") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? String.valueOf(s.getTargetLocation().getY()) : null;
+            }
+        },
+        TARGET_Z_EXACT("target.z.exact") {
+            String resolve(TriggerContext s) {
+                return s.getTargetLocation() != null ? String.valueOf(s.getTargetLocation().getZ()) : null;
+            }
+        },
+        TARGET_EYE_X("target.eye.x") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getBlockX()) : null;
+            }
+        },
+        TARGET_EYE_Y("target.eye.y") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getBlockY()) : null;
+            }
+        },
+        TARGET_EYE_Z("target.eye.z") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getBlockZ()) : null;
+            }
+        },
+        TARGET_EYE_X_EXACT("target.eye.x.exact") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getX()) : null;
+            }
+        },
+        TARGET_EYE_Y_EXACT("target.eye.y.exact") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getY()) : null;
+            }
+        },
+        TARGET_EYE_Z_EXACT("target.eye.z.exact") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getZ()) : null;
+            }
+        },
+        TARGET_PITCH("target.pitch") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getPitch()) : null;
+            }
+        },
+        TARGET_YAW("target.yaw") {
+            String resolve(TriggerContext s) {
+                return s.getTargetEyeLocation() != null ? String.valueOf(s.getTargetEyeLocation().getYaw()) : null;
+            }
+        };
+
+        private final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Resolve the value of this variable
+         * @param s The context of the trigger
+         * @return The value or <tt>null</tt> if it can't be resolved for this trigger
+         */
+        abstract String resolve(TriggerContext s);
+    }
+}
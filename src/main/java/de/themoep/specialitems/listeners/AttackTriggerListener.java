@@ -0,0 +1,90 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.ProjectileTracker;
+import de.themoep.specialitems.SpecialItem;
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.TargetedTrigger;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+
+import java.util.logging.Level;
+
+/**
+ * Handles attacking entities with items or with projectiles shot by them
+ */
+public class AttackTriggerListener extends TriggerListener {
+    public AttackTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.ATTACK_ENTITY);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onPlayerAttackEntity(EntityDamageByEntityEvent event) {
+        Player player = null;
+        TriggerType triggerType = TriggerType.UNSUPPORTED;
+        SpecialItem item = null;
+        if (event.getDamager() instanceof Player) {
+            player = (Player) event.getDamager();
+            if (!plugin.getItemManager().couldBeSpecialItem(player.getInventory().getItemInMainHand())) {
+                return;
+            }
+            triggerType =
+                    event.getEntity() instanceof Player
+                            ? TriggerType.ATTACK_PLAYER
+                            : TriggerType.ATTACK_ENTITY;
+            try {
+                item = plugin.getItemManager().getSpecialItem(player.getInventory().getItemInMainHand());
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().log(Level.WARNING, player.getName() + " has an invalid SpecialItem?", e);
+            }
+        } else if (event.getDamager() instanceof Projectile && ((Projectile) event.getDamager()).getShooter() instanceof Player) {
+            player = (Player) ((Projectile) event.getDamager()).getShooter();
+            triggerType =
+                    event.getEntity() instanceof Player
+                            ? TriggerType.PROJECTILE_HIT_PLAYER
+                            : TriggerType.PROJECTILE_HIT_ENTITY;
+            ProjectileTracker.TrackedProjectile tracked = plugin.getProjectileTracker().get(event.getDamager());
+            if (tracked != null) {
+                plugin.getProjectileTracker().finish(event.getDamager());
+                item = tracked.getItem();
+            }
+        }
+
+        if(item != null) {
+            Trigger trigger = new TargetedTrigger(
+                    event,
+                    player,
+                    event.getEntity(),
+                    item,
+                    triggerType
+            );
+            plugin.getItemManager().executeActions(trigger);
+            if (trigger.shouldRemoveItem()) {
+                plugin.getInventoryIndex().remove(player, item, 1);
+                player.updateInventory();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.ItemRegistry;
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.inventory.EquipmentSlot;
+
+/**
+ * Handles placing items. Special items without a place action are not allowed
+ * to be placed so this is also needed when any item is a placeable block.
+ */
+public class BlockPlaceTriggerListener extends TriggerListener {
+    public BlockPlaceTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.BLOCK_PLACE);
+    }
+
+    @Override
+    public boolean isNeeded(ItemRegistry registry) {
+        return super.isNeeded(registry) || registry.hasPlaceableItems();
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        if (!plugin.getItemManager().couldBeSpecialItem(event.getItemInHand())) {
+            return;
+        }
+        Trigger trigger = new Trigger(event, event.getPlayer(), event.getItemInHand(), TriggerType.BLOCK_PLACE);
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.wasExecuted()) {
+            if (trigger.shouldRemoveItem()) {
+                event.getPlayer().getInventory().setItemInMainHand(removeOne(event.getPlayer().getInventory().getItemInMainHand()));
+                plugin.getInventoryIndex().markDirty(event.getPlayer(), EquipmentSlot.HAND);
+                event.getPlayer().updateInventory();
+            }
+        } else if (trigger.getSpecialItem() != null) {
+            // Special handling to not allow placement of special items
+            event.setCancelled(true);
+        }
+    }
+}
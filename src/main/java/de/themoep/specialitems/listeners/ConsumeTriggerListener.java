@@ -0,0 +1,50 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerItemConsumeEvent;
+import org.bukkit.inventory.EquipmentSlot;
+
+/**
+ * Handles the trigger of consuming an item
+ */
+public class ConsumeTriggerListener extends TriggerListener {
+    public ConsumeTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.CONSUME);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onItemConsume(PlayerItemConsumeEvent event) {
+        if (!plugin.getItemManager().couldBeSpecialItem(event.getItem())) {
+            return;
+        }
+        Trigger trigger = new Trigger(event, event.getPlayer(), event.getItem(), TriggerType.CONSUME);
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.shouldRemoveItem()) {
+            event.getPlayer().getInventory().setItemInMainHand(removeOne(trigger.getItem()));
+            plugin.getInventoryIndex().markDirty(event.getPlayer(), EquipmentSlot.HAND);
+            event.getPlayer().updateInventory();
+        }
+    }
+}
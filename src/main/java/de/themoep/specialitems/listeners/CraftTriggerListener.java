@@ -0,0 +1,52 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItem;
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.inventory.CraftItemEvent;
+
+/**
+ * Handles the trigger of crafting an item
+ */
+public class CraftTriggerListener extends TriggerListener {
+    public CraftTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.CRAFT);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onItemCraft(CraftItemEvent event) {
+        SpecialItem item = plugin.getItemManager().getRecipeItem(event.getRecipe());
+        if (item == null) {
+            return;
+        }
+        Trigger trigger = new Trigger(event, (Player) event.getWhoClicked(), event.getRecipe().getResult(), TriggerType.CRAFT);
+        trigger.setSpecialItem(item);
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.shouldRemoveItem()) {
+            event.setCurrentItem(removeOne(trigger.getItem()));
+            ((Player) event.getWhoClicked()).updateInventory();
+        }
+    }
+}
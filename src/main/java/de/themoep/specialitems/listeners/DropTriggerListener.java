@@ -0,0 +1,49 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerDropItemEvent;
+
+/**
+ * Handles the trigger of dropping an item
+ */
+public class DropTriggerListener extends TriggerListener {
+    public DropTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.DROP);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onItemDrop(PlayerDropItemEvent event) {
+        if (!plugin.getItemManager().couldBeSpecialItem(event.getItemDrop().getItemStack())) {
+            return;
+        }
+        Trigger trigger = new Trigger(event, event.getPlayer(), event.getItemDrop().getItemStack(), TriggerType.DROP);
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.shouldRemoveItem()) {
+            // no nice way to remove dropped item if the event was cancelled
+            // TODO: Add info to documentation about that incompatibility!
+            event.getItemDrop().remove();
+        }
+    }
+}
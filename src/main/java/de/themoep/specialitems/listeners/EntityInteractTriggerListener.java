@@ -0,0 +1,93 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.TargetedTrigger;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerInteractEntityEvent;
+
+/**
+ * Handles right clicking entities with items
+ */
+public class EntityInteractTriggerListener extends TriggerListener {
+    public EntityInteractTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.RIGHT_CLICK_ENTITY);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onPlayerInteractWithEntity(PlayerInteractEntityEvent event) {
+        if (!plugin.getItemManager().couldBeSpecialItem(event.getPlayer().getInventory().getItemInMainHand())) {
+            return;
+        }
+        TriggerType triggerType =
+                event.getRightClicked() instanceof Player
+                        ? TriggerType.RIGHT_CLICK_PLAYER
+                        : TriggerType.RIGHT_CLICK_ENTITY;
+        Trigger trigger = new TargetedTrigger(
+                event,
+                event.getPlayer(),
+                event.getRightClicked(),
+                event.getPlayer().getInventory().getItemInMainHand(),
+                triggerType
+        );
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.shouldRemoveItem() && event.getHand() != null) {
+            switch (event.getHand()) {
+                case HAND:
+                    event.getPlayer().getInventory().setItem(
+                            event.getPlayer().getInventory().getHeldItemSlot(),
+                            removeOne(event.getPlayer().getInventory().getItemInMainHand())
+                    );
+                    break;
+                case OFF_HAND:
+                    event.getPlayer().getInventory().setItemInOffHand(
+                            removeOne(event.getPlayer().getInventory().getItemInOffHand())
+                    );
+                    break;
+                case HEAD:
+                    event.getPlayer().getInventory().setHelmet(
+                            removeOne(event.getPlayer().getInventory().getHelmet())
+                    );
+                    break;
+                case CHEST:
+                    event.getPlayer().getInventory().setChestplate(
+                            removeOne(event.getPlayer().getInventory().getChestplate())
+                    );
+                    break;
+                case LEGS:
+                    event.getPlayer().getInventory().setLeggings(
+                            removeOne(event.getPlayer().getInventory().getLeggings())
+                    );
+                    break;
+                case FEET:
+                    event.getPlayer().getInventory().setBoots(
+                            removeOne(event.getPlayer().getInventory().getBoots())
+                    );
+                    break;
+            }
+            plugin.getInventoryIndex().markDirty(event.getPlayer(), event.getHand());
+            event.getPlayer().updateInventory();
+        }
+    }
+}
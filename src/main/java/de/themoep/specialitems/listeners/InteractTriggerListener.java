@@ -0,0 +1,113 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.TargetedTrigger;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.Material;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Handles the click triggers of items in a hand
+ */
+public class InteractTriggerListener extends TriggerListener {
+    public InteractTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.HAND);
+    }
+
+    @EventHandler
+    public void onPlayerInteract(PlayerInteractEvent event) {
+        if (!event.hasItem() || !plugin.getItemManager().couldBeSpecialItem(event.getItem())) {
+            return;
+        }
+        TriggerType triggerType = TriggerType.UNSUPPORTED;
+        switch (event.getAction()) {
+            case RIGHT_CLICK_AIR:
+                triggerType = TriggerType.RIGHT_CLICK_AIR;
+                break;
+            case RIGHT_CLICK_BLOCK:
+                triggerType = TriggerType.RIGHT_CLICK_BLOCK;
+                break;
+            case LEFT_CLICK_AIR:
+                triggerType = TriggerType.LEFT_CLICK_AIR;
+                break;
+            case LEFT_CLICK_BLOCK:
+                triggerType = TriggerType.LEFT_CLICK_BLOCK;
+                break;
+        }
+
+        if (triggerType == TriggerType.UNSUPPORTED) {
+            return;
+        }
+
+        // Hand items prioritisation handling
+        if (event.getHand() == EquipmentSlot.OFF_HAND) {
+            Material mainHand = event.getPlayer().getInventory().getItemInMainHand().getType();
+            if (mainHand == Material.CROSSBOW) {
+                return;
+            }
+        } else if (event.getHand() == EquipmentSlot.HAND) {
+            if (event.getAction() == Action.RIGHT_CLICK_BLOCK && event.getClickedBlock() != null) {
+                Material clicked = event.getClickedBlock().getType();
+                if (clicked.isInteractable() && !event.getPlayer().isSneaking()) {
+                    return;
+                }
+            }
+        }
+
+        Trigger trigger;
+        if (triggerType.isChildOf(TriggerType.CLICK_BLOCK)) {
+            trigger = new TargetedTrigger(event, event.getPlayer(), event.getClickedBlock(), event.getItem(), triggerType);
+        } else {
+            trigger = new Trigger(event, event.getPlayer(), event.getItem(), triggerType);
+        }
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.shouldRemoveItem() && event.getHand() != null) {
+            ItemStack item = removeOne(trigger.getItem());
+            switch (event.getHand()) {
+                case HAND:
+                    event.getPlayer().getInventory().setItem(event.getPlayer().getInventory().getHeldItemSlot(), item);
+                    break;
+                case OFF_HAND:
+                    event.getPlayer().getInventory().setItemInOffHand(item);
+                    break;
+                case HEAD:
+                    event.getPlayer().getInventory().setHelmet(item);
+                    break;
+                case CHEST:
+                    event.getPlayer().getInventory().setChestplate(item);
+                    break;
+                case LEGS:
+                    event.getPlayer().getInventory().setLeggings(item);
+                    break;
+                case FEET:
+                    event.getPlayer().getInventory().setBoots(item);
+                    break;
+            }
+            plugin.getInventoryIndex().markDirty(event.getPlayer(), event.getHand());
+            event.getPlayer().updateInventory();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.inventory.InventoryClickEvent;
+
+/**
+ * Handles the click triggers of items in inventories
+ */
+public class InventoryTriggerListener extends TriggerListener {
+    public InventoryTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.INVENTORY);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onPlayerInventoryClick(InventoryClickEvent event) {
+        if (!plugin.getItemManager().couldBeSpecialItem(event.getCurrentItem()) || !(event.getWhoClicked() instanceof Player)) {
+            return;
+        }
+
+        TriggerType triggerType = TriggerType.UNSUPPORTED;
+        switch (event.getClick()) {
+            case LEFT:
+                triggerType = TriggerType.LEFT_CLICK_INV;
+                break;
+            case SHIFT_LEFT:
+                triggerType = TriggerType.SHIFT_LEFT_CLICK_INV;
+                break;
+            case RIGHT:
+                triggerType = TriggerType.RIGHT_CLICK_INV;
+                break;
+            case SHIFT_RIGHT:
+                triggerType = TriggerType.SHIFT_RIGHT_CLICK_INV;
+                break;
+            case MIDDLE:
+                triggerType = TriggerType.MIDDLE_CLICK_INV;
+                break;
+            case DOUBLE_CLICK:
+                triggerType = TriggerType.DOUBLE_CLICK_INV;
+                break;
+            case DROP:
+                triggerType = TriggerType.DROP_INV;
+                break;
+            case CONTROL_DROP:
+                triggerType = TriggerType.CONTROL_DROP_INV;
+                break;
+            case WINDOW_BORDER_LEFT:
+                triggerType = TriggerType.LEFT_BORDER_INV;
+                break;
+            case WINDOW_BORDER_RIGHT:
+                triggerType = TriggerType.RIGHT_BORDER_INV;
+                break;
+            case NUMBER_KEY:
+                triggerType = TriggerType.valueOf("NUMBER_KEY_" + (event.getHotbarButton() + 1) + "_INV");
+                break;
+        }
+
+        if (triggerType == TriggerType.UNSUPPORTED) {
+            return;
+        }
+
+        Trigger trigger = new Trigger(event, (Player) event.getWhoClicked(), event.getCurrentItem(), triggerType);
+        plugin.getItemManager().executeActions(trigger);
+        if (trigger.shouldRemoveItem()) {
+            event.setCurrentItem(removeOne(trigger.getItem()));
+            ((Player) event.getWhoClicked()).updateInventory();
+        }
+    }
+}
@@ -36,10 +36,10 @@ public class ItemCraftListener implements Listener {
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     public void onItemCraft(CraftItemEvent event) {
-        if (plugin.getConfig().getBoolean("permission.craft")) {
-            SpecialItem item = plugin.getItemManager().getSpecialItem(event.getRecipe().getResult());
+        if (plugin.getSettings().isCraftPermission()) {
+            SpecialItem item = plugin.getItemManager().getRecipeItem(event.getRecipe());
             if (item != null
-                    && !plugin.checkPerm(event.getWhoClicked(), "specialitems.craft." + item.getId(), "craft")) {
+                    && !plugin.checkPerm(event.getWhoClicked(), "specialitems.item." + item.getId() + ".craft", "craft")) {
                 event.setCancelled(true);
             }
         }
@@ -47,11 +47,11 @@ public class ItemCraftListener implements Listener {
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.LOWEST)
     public void onItemCraft(PrepareItemCraftEvent event) {
-        if (event.getRecipe() != null && plugin.getConfig().getBoolean("permission.craft")) {
-            SpecialItem item = plugin.getItemManager().getSpecialItem(event.getRecipe().getResult());
+        if (event.getRecipe() != null && plugin.getSettings().isCraftPermission()) {
+            SpecialItem item = plugin.getItemManager().getRecipeItem(event.getRecipe());
             if (item != null) {
                 for (HumanEntity viewer : event.getViewers()) {
-                    if (!viewer.hasPermission( "specialitems.craft." + item.getId())) {
+                    if (!viewer.hasPermission( "specialitems.item." + item.getId() + ".craft")) {
                         event.getInventory().setResult(null);
                         break;
                     }
@@ -0,0 +1,91 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.ProjectileTracker;
+import de.themoep.specialitems.SpecialItem;
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.TargetedTrigger;
+import de.themoep.specialitems.actions.Trigger;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.entity.ProjectileHitEvent;
+import org.bukkit.event.entity.ProjectileLaunchEvent;
+import org.bukkit.inventory.EquipmentSlot;
+
+/**
+ * Handles shooting projectiles with items and the projectiles hitting blocks.
+ * Also needed for entity hits as the projectiles are only tracked when shot.
+ */
+public class ProjectileTriggerListener extends TriggerListener {
+    public ProjectileTriggerListener(SpecialItems plugin) {
+        super(plugin, TriggerType.SHOOT_PROJECTILE, TriggerType.PROJECTILE_HIT);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onArrowShoot(ProjectileLaunchEvent event) {
+        if (event.getEntity().getShooter() instanceof Player) {
+            Player player = (Player) event.getEntity().getShooter();
+            if (!plugin.getItemManager().couldBeSpecialItem(player.getInventory().getItemInMainHand())) {
+                return;
+            }
+            Trigger trigger = new Trigger(event, player, player.getInventory().getItemInMainHand(), TriggerType.SHOOT_PROJECTILE);
+            plugin.getItemManager().executeActions(trigger);
+            if (trigger.hasSpecialItem()) {
+                plugin.getProjectileTracker().track(event.getEntity(), trigger.getSpecialItem(), player);
+            }
+            if (trigger.shouldRemoveItem()) {
+                player.getInventory().setItemInMainHand(removeOne(trigger.getItem()));
+                plugin.getInventoryIndex().markDirty(player, EquipmentSlot.HAND);
+                player.updateInventory();
+            }
+        }
+    }
+
+    // Targeted Triggers:
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
+    public void onArrowHit(ProjectileHitEvent event) {
+        ProjectileTracker.TrackedProjectile tracked = plugin.getProjectileTracker().get(event.getEntity());
+        if (tracked != null) {
+            if (event.getHitBlock() != null) {
+                // Entity hits are still needed by the damage event
+                plugin.getProjectileTracker().finish(event.getEntity());
+            }
+            SpecialItem item = tracked.getItem();
+            Player player = tracked.getShooter();
+            if (item != null && player != null) {
+                Trigger trigger = new TargetedTrigger(
+                        event,
+                        player,
+                        event.getEntity(),
+                        item,
+                        TriggerType.PROJECTILE_HIT_BLOCK
+                );
+                plugin.getItemManager().executeActions(trigger);
+                if (trigger.shouldRemoveItem()) {
+                    plugin.getInventoryIndex().remove(player, item, 1);
+                    player.updateInventory();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.ItemRegistry;
+import de.themoep.specialitems.SpecialItems;
+import de.themoep.specialitems.actions.TriggerType;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A listener for a family of triggers. It only gets registered when an item has actions for one of them.
+ */
+public abstract class TriggerListener implements Listener {
+    protected final SpecialItems plugin;
+    private final boolean[] handled = new boolean[TriggerType.values().length];
+
+    /**
+     * @param plugin    The plugin
+     * @param types     The types of the triggers that this listener handles, children of them are handled too
+     */
+    protected TriggerListener(SpecialItems plugin, TriggerType... types) {
+        this.plugin = plugin;
+        for (TriggerType type : TriggerType.values()) {
+            for (TriggerType handledType : types) {
+                if (type == handledType || type.isChildOf(handledType)) {
+                    handled[type.ordinal()] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether or not this listener needs to be registered for a registry
+     * @param registry The registry
+     * @return <tt>true</tt> if any item of the registry has actions for a trigger of this listener
+     */
+    public boolean isNeeded(ItemRegistry registry) {
+        for (TriggerType type : TriggerType.values()) {
+            if (handled[type.ordinal()] && registry.isTriggerUsed(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static ItemStack removeOne(ItemStack item) {
+        if (item.getAmount() > 1) {
+            item.setAmount(item.getAmount() - 1);
+        } else {
+            item = null;
+        }
+        return item;
+    }
+}
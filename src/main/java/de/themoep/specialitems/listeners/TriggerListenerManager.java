@@ -0,0 +1,85 @@
+package de.themoep.specialitems.listeners;
+
+/*
+ * SpecialItems
+ * Copyright (c) 2020 Max Lee aka Phoenix616 (mail@moep.tv)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.specialitems.ItemRegistry;
+import de.themoep.specialitems.SpecialItems;
+import org.bukkit.event.HandlerList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registers only the trigger listeners that the items of the active registry need
+ * so that events of unused triggers don't cost anything.
+ */
+public class TriggerListenerManager {
+    private final SpecialItems plugin;
+    private final List<TriggerListener> listeners;
+    private final boolean[] registered;
+
+    public TriggerListenerManager(SpecialItems plugin) {
+        this.plugin = plugin;
+        listeners = Arrays.asList(
+                new InteractTriggerListener(plugin),
+                new InventoryTriggerListener(plugin),
+                new DropTriggerListener(plugin),
+                new ConsumeTriggerListener(plugin),
+                new CraftTriggerListener(plugin),
+                new ProjectileTriggerListener(plugin),
+                new AttackTriggerListener(plugin),
+                new EntityInteractTriggerListener(plugin),
+                new BlockPlaceTriggerListener(plugin)
+        );
+        registered = new boolean[listeners.size()];
+    }
+
+    /**
+     * Register the listeners that a registry needs and unregister the ones it doesn't.
+     * Needs to be called on the main thread.
+     * @param registry The registry
+     */
+    public void update(ItemRegistry registry) {
+        for (int i = 0; i < listeners.size(); i++) {
+            TriggerListener listener = listeners.get(i);
+            boolean needed = listener.isNeeded(registry);
+            if (needed && !registered[i]) {
+                plugin.getServer().getPluginManager().registerEvents(listener, plugin);
+                registered[i] = true;
+            } else if (!needed && registered[i]) {
+                HandlerList.unregisterAll(listener);
+                registered[i] = false;
+            }
+        }
+    }
+
+    /**
+     * Get the names of the currently registered listeners
+     */
+    public List<String> getRegistered() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < listeners.size(); i++) {
+            if (registered[i]) {
+                names.add(listeners.get(i).getClass().getSimpleName());
+            }
+        }
+        return names;
+    }
+}